@@ -0,0 +1,445 @@
+/* CDList.java */
+
+package list;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  A CDList is a lock-free concurrent deque.  Any number of threads may
+ *  insert and remove items at both ends at once; no operation ever blocks
+ *  or waits for another thread.
+ *
+ *  The implementation is Michael's anchor algorithm (M. M. Michael,
+ *  "CAS-Based Lock-Free Algorithm for Shared Deques", Euro-Par 2003).  The
+ *  deque is a doubly-linked list of CDListNodes whose two ends, together
+ *  with a status, are held in one immutable Anchor that is replaced with
+ *  compare-and-set.  A push swings the anchor first and links the new node
+ *  to its neighbor afterwards; until it does, the status is LPUSH or RPUSH
+ *  and any thread that finds the deque in that state completes the link
+ *  before trying its own operation.  Removed nodes are never reused, so the
+ *  garbage collector rules out ABA problems.
+ *
+ *  front(), back() and the nodes' next() and prev() give weakly consistent
+ *  traversals; the nodes cannot be used to modify the deque.
+ **/
+
+public class CDList extends List {
+
+  final static int STABLE = 0;
+  final static int RPUSH = 1;
+  final static int LPUSH = 2;
+
+  /**
+   *  The ends of the deque and its status.  left and right are both null
+   *  when the deque is empty.
+   **/
+  static final class Anchor {
+    final CDListNode left;
+    final CDListNode right;
+    final int status;
+
+    Anchor(CDListNode left, CDListNode right, int status) {
+      this.left = left;
+      this.right = right;
+      this.status = status;
+    }
+  }
+
+  /**
+   *  (inherited)  size is unused; the length is kept in "count".
+   *  anchor references the current Anchor.
+   *  count is the number of items, updated after each insertion and removal.
+   **/
+
+  private final AtomicReference<Anchor> anchor =
+    new AtomicReference<Anchor>(new Anchor(null, null, STABLE));
+  private final AtomicInteger count = new AtomicInteger();
+
+  /* CDList invariants, whenever anchor.status == STABLE:
+   *  1)  anchor.left == null if and only if anchor.right == null.
+   *  2)  anchor.right can be reached from anchor.left by a sequence of
+   *      "right" references, and for every node x on the way except
+   *      anchor.right, x.right.left == x.
+   *  3)  Every node on that path has myList == this, except briefly a node
+   *      that has just been removed.
+   *  When anchor.status is RPUSH (LPUSH), the same holds except that the
+   *  right (left) link from the old end to anchor.right (anchor.left) may not
+   *  be set yet.
+   **/
+
+  /**
+   *  CDList() constructs an empty CDList.
+   **/
+  public CDList() {
+  }
+
+  /**
+   *  isEmpty() returns true if this CDList is empty, false otherwise.
+   *
+   *  @return true if this CDList is empty, false otherwise.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public boolean isEmpty() {
+    return anchor.get().right == null;
+  }
+
+  /**
+   *  length() returns the length of this CDList.  While other threads are
+   *  inserting or removing items the result may be out of date.
+   *
+   *  @return the length of this CDList.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public int length() {
+    return Math.max(0, count.get());
+  }
+
+  /**
+   *  insertFront() inserts an item at the front of this CDList.
+   *
+   *  @param item is the item to be inserted.
+   *
+   *  Performance:  lock-free; O(1) time without contention.
+   **/
+  public void insertFront(Object item) {
+    CDListNode node = new CDListNode(item, this);
+    while (true) {
+      Anchor a = anchor.get();
+      if (a.left == null) {
+        if (anchor.compareAndSet(a, new Anchor(node, node, STABLE))) {
+          break;
+        }
+      } else if (a.status == STABLE) {
+        node.right.set(a.left);
+        Anchor b = new Anchor(node, a.right, LPUSH);
+        if (anchor.compareAndSet(a, b)) {
+          stabilizeLeft(b);
+          break;
+        }
+      } else {
+        stabilize(a);
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  /**
+   *  insertBack() inserts an item at the back of this CDList.
+   *
+   *  @param item is the item to be inserted.
+   *
+   *  Performance:  lock-free; O(1) time without contention.
+   **/
+  public void insertBack(Object item) {
+    CDListNode node = new CDListNode(item, this);
+    while (true) {
+      Anchor a = anchor.get();
+      if (a.right == null) {
+        if (anchor.compareAndSet(a, new Anchor(node, node, STABLE))) {
+          break;
+        }
+      } else if (a.status == STABLE) {
+        node.left.set(a.right);
+        Anchor b = new Anchor(a.left, node, RPUSH);
+        if (anchor.compareAndSet(a, b)) {
+          stabilizeRight(b);
+          break;
+        }
+      } else {
+        stabilize(a);
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  /**
+   *  removeFront() removes the item at the front of this CDList.
+   *
+   *  @return the removed item, or null if the CDList is empty.
+   *
+   *  Performance:  lock-free; O(1) time without contention.
+   **/
+  public Object removeFront() {
+    CDListNode node;
+    while (true) {
+      Anchor a = anchor.get();
+      node = a.left;
+      if (node == null) {
+        return null;
+      }
+      if (node == a.right) {
+        if (anchor.compareAndSet(a, new Anchor(null, null, STABLE))) {
+          break;
+        }
+      } else if (a.status == STABLE) {
+        if (anchor.compareAndSet(a, new Anchor(node.right.get(), a.right, STABLE))) {
+          break;
+        }
+      } else {
+        stabilize(a);
+      }
+    }
+    return removed(node);
+  }
+
+  /**
+   *  removeBack() removes the item at the back of this CDList.
+   *
+   *  @return the removed item, or null if the CDList is empty.
+   *
+   *  Performance:  lock-free; O(1) time without contention.
+   **/
+  public Object removeBack() {
+    CDListNode node;
+    while (true) {
+      Anchor a = anchor.get();
+      node = a.right;
+      if (node == null) {
+        return null;
+      }
+      if (node == a.left) {
+        if (anchor.compareAndSet(a, new Anchor(null, null, STABLE))) {
+          break;
+        }
+      } else if (a.status == STABLE) {
+        if (anchor.compareAndSet(a, new Anchor(a.left, node.left.get(), STABLE))) {
+          break;
+        }
+      } else {
+        stabilize(a);
+      }
+    }
+    return removed(node);
+  }
+
+  //  Invalidates a node that has just been taken off an end and returns its
+  //  item.
+  private Object removed(CDListNode node) {
+    Object item = node.item;
+    node.myList = null;
+    count.decrementAndGet();
+    return item;
+  }
+
+  //  Completes the push recorded in anchor a.
+  private void stabilize(Anchor a) {
+    if (a.status == RPUSH) {
+      stabilizeRight(a);
+    } else {
+      stabilizeLeft(a);
+    }
+  }
+
+  //  Links the old back node to the node pushed at the back in anchor a,
+  //  then marks the deque stable.
+  private void stabilizeRight(Anchor a) {
+    CDListNode prev = a.right.left.get();
+    if (anchor.get() != a) {
+      return;
+    }
+    CDListNode prevNext = prev.right.get();
+    if (prevNext != a.right) {
+      if (anchor.get() != a) {
+        return;
+      }
+      if (!prev.right.compareAndSet(prevNext, a.right)) {
+        return;
+      }
+    }
+    anchor.compareAndSet(a, new Anchor(a.left, a.right, STABLE));
+  }
+
+  //  Links the old front node to the node pushed at the front in anchor a,
+  //  then marks the deque stable.
+  private void stabilizeLeft(Anchor a) {
+    CDListNode next = a.left.right.get();
+    if (anchor.get() != a) {
+      return;
+    }
+    CDListNode nextPrev = next.left.get();
+    if (nextPrev != a.left) {
+      if (anchor.get() != a) {
+        return;
+      }
+      if (!next.left.compareAndSet(nextPrev, a.left)) {
+        return;
+      }
+    }
+    anchor.compareAndSet(a, new Anchor(a.left, a.right, STABLE));
+  }
+
+  //  Returns a stable anchor, completing any pending push first.
+  private Anchor stableAnchor() {
+    while (true) {
+      Anchor a = anchor.get();
+      if (a.status == STABLE) {
+        return a;
+      }
+      stabilize(a);
+    }
+  }
+
+  /**
+   *  front() returns the node at the front of this CDList.  If the CDList is
+   *  empty, return an "invalid" node--a node with the property that any
+   *  attempt to use it will cause an exception.
+   *
+   *  @return a ListNode at the front of this CDList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode front() {
+    CDListNode node = anchor.get().left;
+    return node == null ? new CDListNode(null, null) : node;
+  }
+
+  /**
+   *  back() returns the node at the back of this CDList.  If the CDList is
+   *  empty, return an "invalid" node--a node with the property that any
+   *  attempt to use it will cause an exception.
+   *
+   *  @return a ListNode at the back of this CDList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode back() {
+    CDListNode node = anchor.get().right;
+    return node == null ? new CDListNode(null, null) : node;
+  }
+
+  //  Returns the node after "node", or an invalid node at the back.
+  ListNode after(CDListNode node) {
+    Anchor a = stableAnchor();
+    CDListNode next = node == a.right ? null : node.right.get();
+    return next == null ? new CDListNode(null, null) : next;
+  }
+
+  //  Returns the node before "node", or an invalid node at the front.
+  ListNode before(CDListNode node) {
+    Anchor a = stableAnchor();
+    CDListNode prev = node == a.left ? null : node.left.get();
+    return prev == null ? new CDListNode(null, null) : prev;
+  }
+
+  /**
+   *  toArray() returns the items of this CDList, front to back, as they
+   *  were at one moment during the call.
+   *
+   *  @return a new array of the items.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public Object[] toArray() {
+    Anchor a = stableAnchor();
+    java.util.ArrayList<Object> items = new java.util.ArrayList<Object>();
+    for (CDListNode n = a.left; n != null; n = n.right.get()) {
+      items.add(n.item);
+      if (n == a.right) {
+        break;
+      }
+    }
+    return items.toArray();
+  }
+
+  /**
+   *  toString() returns a String representation of this CDList.
+   *
+   *  @return a String representation of this CDList.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[  ");
+    Object[] items = toArray();
+    for (int i = 0; i < items.length; i++) {
+      result.append(items[i]).append("  ");
+    }
+    return result.append("]").toString();
+  }
+
+  public static void main(String[] argv) throws InterruptedException {
+    final CDList l = new CDList();
+    System.out.println("An empty list should be [  ]: " + l);
+    System.out.println("l.removeFront() should be null: " + l.removeFront());
+    l.insertBack(Integer.valueOf(2));
+    l.insertBack(Integer.valueOf(3));
+    l.insertFront(Integer.valueOf(1));
+    System.out.println("l should be [  1  2  3  ]: " + l);
+    try {
+      ListNode n = l.front().next();
+      System.out.println("l.front().next().item() should be 2: " + n.item());
+      try {
+        n.remove();
+        System.out.println("n.remove() should be unsupported, but wasn't.");
+      } catch (UnsupportedOperationException e) {
+        System.out.println("n.remove() should be unsupported, and was.");
+      }
+    } catch (InvalidNodeException lbe) {
+      System.err.println ("Caught InvalidNodeException that should not happen.");
+    }
+    System.out.println("l.removeBack() should be 3: " + l.removeBack());
+    System.out.println("l.removeFront() should be 1: " + l.removeFront());
+    System.out.println("l.removeFront() should be 2: " + l.removeFront());
+    System.out.println("l.isEmpty() should be true: " + l.isEmpty());
+
+    // Four threads push 100000 numbers each at both ends while four others
+    // pop from both ends; every number must come out exactly once.
+    final int threads = 4;
+    final int per = 100000;
+    final boolean[] seen = new boolean[threads * per];
+    final AtomicInteger popped = new AtomicInteger();
+    final AtomicInteger duplicates = new AtomicInteger();
+    Thread[] workers = new Thread[2 * threads];
+    for (int t = 0; t < threads; t++) {
+      final int base = t * per;
+      workers[t] = new Thread() {
+        public void run() {
+          for (int i = 0; i < per; i++) {
+            if (i % 2 == 0) {
+              l.insertBack(Integer.valueOf(base + i));
+            } else {
+              l.insertFront(Integer.valueOf(base + i));
+            }
+          }
+        }
+      };
+      final boolean front = t % 2 == 0;
+      workers[threads + t] = new Thread() {
+        public void run() {
+          while (popped.get() < threads * per) {
+            Object item = front ? l.removeFront() : l.removeBack();
+            if (item != null) {
+              int i = ((Integer) item).intValue();
+              synchronized (seen) {
+                if (seen[i]) {
+                  duplicates.incrementAndGet();
+                }
+                seen[i] = true;
+              }
+              popped.incrementAndGet();
+            }
+          }
+        }
+      };
+    }
+    for (int t = 0; t < workers.length; t++) {
+      workers[t].start();
+    }
+    for (int t = 0; t < workers.length; t++) {
+      workers[t].join();
+    }
+    int missing = 0;
+    for (int i = 0; i < seen.length; i++) {
+      if (!seen[i]) {
+        missing++;
+      }
+    }
+    System.out.println("Concurrent test: popped " + popped.get() + " of " + seen.length
+                       + ", duplicates should be 0: " + duplicates.get()
+                       + ", missing should be 0: " + missing
+                       + ", l.isEmpty() should be true: " + l.isEmpty());
+  }
+}
@@ -0,0 +1,110 @@
+/* CDListNode.java */
+
+package list;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  A CDListNode is a node in a CDList (concurrent deque).  Its item never
+ *  changes, and its links are only changed by the CDList, with
+ *  compare-and-set, so nodes can be read from any thread.
+ *
+ *  A node becomes invalid when it is removed from its deque.  Traversals
+ *  with next() and prev() are weakly consistent: they never fail because of
+ *  concurrent insertions and removals, but may or may not see their effects.
+ *  Positional mutation is not supported; setItem(), insertAfter(),
+ *  insertBefore() and remove() always throw UnsupportedOperationException,
+ *  whether or not the node is valid.
+ **/
+
+public class CDListNode extends ListNode {
+
+  /**
+   *  (inherited)  item references the item stored in the current node.
+   *  (inherited)  myList references the CDList that contains this node, and
+   *               is set to null when the node is removed.
+   *  left references the node toward the front of the deque.
+   *  right references the node toward the back of the deque.
+   **/
+
+  final AtomicReference<CDListNode> left = new AtomicReference<CDListNode>();
+  final AtomicReference<CDListNode> right = new AtomicReference<CDListNode>();
+
+  /**
+   *  CDListNode() constructor.
+   *  @param i the item to store in the node.
+   *  @param l the deque this node is in, or null for an invalid node.
+   */
+  CDListNode(Object i, CDList l) {
+    item = i;
+    myList = l;
+  }
+
+  /**
+   *  next() returns the node following this node, or an invalid node if
+   *  this node is at the back.  If this node is invalid, throws an exception.
+   *
+   *  @return the node following this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   */
+  public ListNode next() throws InvalidNodeException {
+    CDList l = (CDList) myList;
+    if (l == null) {
+      throw new InvalidNodeException("next() called on invalid node");
+    }
+    return l.after(this);
+  }
+
+  /**
+   *  prev() returns the node preceding this node, or an invalid node if
+   *  this node is at the front.  If this node is invalid, throws an exception.
+   *
+   *  @return the node preceding this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   */
+  public ListNode prev() throws InvalidNodeException {
+    CDList l = (CDList) myList;
+    if (l == null) {
+      throw new InvalidNodeException("prev() called on invalid node");
+    }
+    return l.before(this);
+  }
+
+  /**
+   *  setItem() is not supported.
+   *
+   *  @exception UnsupportedOperationException always.
+   */
+  public void setItem(Object item) throws InvalidNodeException {
+    throw new UnsupportedOperationException("setItem() is not supported by CDList");
+  }
+
+  /**
+   *  insertAfter() is not supported.
+   *
+   *  @exception UnsupportedOperationException always.
+   */
+  public void insertAfter(Object item) throws InvalidNodeException {
+    throw new UnsupportedOperationException("insertAfter() is not supported by CDList");
+  }
+
+  /**
+   *  insertBefore() is not supported.
+   *
+   *  @exception UnsupportedOperationException always.
+   */
+  public void insertBefore(Object item) throws InvalidNodeException {
+    throw new UnsupportedOperationException("insertBefore() is not supported by CDList");
+  }
+
+  /**
+   *  remove() is not supported; use CDList.removeFront() or removeBack().
+   *
+   *  @exception UnsupportedOperationException always.
+   */
+  public void remove() throws InvalidNodeException {
+    throw new UnsupportedOperationException("remove() is not supported by CDList; "
+                                            + "use removeFront() or removeBack()");
+  }
+
+}
@@ -22,6 +22,12 @@ public class DList extends List {
 
   protected DListNode head;
 
+  /**
+   *  token identifies this list to its nodes (see DListToken).  It is
+   *  replaced whenever the list gives all of its nodes to another list.
+   **/
+  DListToken token = new DListToken(this);
+
   /* DList invariants:
    *  1)  head != null.
    *  2)  For every DListNode x in a DList, x.next != null.
@@ -31,7 +37,8 @@ public class DList extends List {
    *  6)  For every DList l, l.head.myList = null.  (Note that l.head is the
    *      sentinel.)
    *  7)  For every DListNode x in a DList l EXCEPT l.head (the sentinel),
-   *      x.myList = l.
+   *      x.token.resolve() == l.token, so x.owner() = l.  (x.myList may
+   *      still name an earlier list until owner() is called on x.)
    *  8)  size is the number of DListNodes, NOT COUNTING the sentinel,
    *      that can be accessed from the sentinel (head) by a sequence of
    *      "next" references.
@@ -127,6 +134,122 @@ public class DList extends List {
     return head.prev;
   }
 
+  /**
+   *  concat() moves all the items of "other" to the back of this DList,
+   *  leaving "other" empty.  No nodes are copied or allocated, and the nodes
+   *  that are moved remain valid, now as nodes of this list.
+   *
+   *  @param other the list whose items are moved; not this list.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void concat(DList other) {
+    take(head.prev, other);
+  }
+
+  /**
+   *  splice() moves all the items of "other" into this DList, immediately
+   *  following "node", leaving "other" empty.  No nodes are copied or
+   *  allocated, and the nodes that are moved remain valid, now as nodes of
+   *  this list.
+   *
+   *  @param node a node of this list.
+   *  @param other the list whose items are moved; not this list.
+   *  @exception InvalidNodeException if node is not a valid node of this list.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void splice(ListNode node, DList other) throws InvalidNodeException {
+    if (!node.isValidNode() || !(node instanceof DListNode)
+        || ((DListNode) node).owner() != this) {
+      throw new InvalidNodeException("splice() called with a node not in this list");
+    }
+    take((DListNode) node, other);
+  }
+
+  //  Links all the nodes of "other" in after node p of this list and hands
+  //  their ownership to this list by forwarding other's token.
+  private void take(DListNode p, DList other) {
+    if (other == this) {
+      throw new IllegalArgumentException("cannot move a DList into itself");
+    }
+    if (other.size == 0) {
+      return;
+    }
+    DListNode first = other.head.next;
+    DListNode last = other.head.prev;
+    DListNode q = p.next;
+    p.next = first;
+    first.prev = p;
+    last.next = q;
+    q.prev = last;
+    size += other.size;
+
+    other.token.forward = token;
+    other.token.list = null;
+    other.token = new DListToken(other);
+    other.head.next = other.head;
+    other.head.prev = other.head;
+    other.size = 0;
+  }
+
+  /**
+   *  addAll() inserts the items of another list at the back of this DList,
+   *  in order.  The other list is not changed; it may be this list.
+   *
+   *  @param other the list whose items are inserted.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of "other".
+   **/
+  public void addAll(List other) {
+    if (other instanceof DList) {
+      DListNode n = ((DList) other).head.next;
+      for (int i = other.length(); i > 0; i--) {
+        insertBack(n.item);
+        n = n.next;
+      }
+      return;
+    }
+    try {
+      for (ListNode n = other.front(); n.isValidNode(); n = n.next()) {
+        insertBack(n.item());
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    }
+  }
+
+  /**
+   *  addAll() inserts the items of an array at the back of this DList, in
+   *  order.
+   *
+   *  @param items the items to insert.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of "items".
+   **/
+  public void addAll(Object[] items) {
+    for (int i = 0; i < items.length; i++) {
+      insertBack(items[i]);
+    }
+  }
+
+  /**
+   *  toArray() returns the items of this DList, front to back.
+   *
+   *  @return a new array of length length().
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   **/
+  public Object[] toArray() {
+    Object[] result = new Object[size];
+    DListNode n = head.next;
+    for (int i = 0; i < size; i++) {
+      result[i] = n.item;
+      n = n.next;
+    }
+    return result;
+  }
+
   /**
    *  toString() returns a String representation of this DList.
    *
@@ -212,8 +335,44 @@ public class DList extends List {
     System.out.println("l after insertFront(10) should be [  10  ]: " + l);
   }
 
+  private static void testBulk() {
+    DList a = new DList();
+    DList b = new DList();
+    DList c = new DList();
+    a.addAll(new Object[] {Integer.valueOf(1), Integer.valueOf(2)});
+    b.addAll(new Object[] {Integer.valueOf(3), Integer.valueOf(4)});
+    c.insertBack(Integer.valueOf(5));
+    ListNode three = b.front();
+    ListNode five = c.front();
+    b.concat(c);
+    a.concat(b);
+    System.out.println("After concatenating, a should be [  1  2  3  4  5  ]: " + a);
+    System.out.println("b and c should be empty: " + b + " " + c);
+    System.out.println("a.length() should be 5: " + a.length());
+    try {
+      three.insertAfter(Integer.valueOf(33));
+      five.remove();
+      System.out.println("After inserting 33 after 3 and removing 5, a should be "
+                         + "[  1  2  3  33  4  ]: " + a + ", length 5: " + a.length());
+      b.insertBack(Integer.valueOf(10));
+      c.addAll(a);
+      System.out.println("c should be a copy of a: " + c);
+      a.splice(a.front(), b);
+      System.out.println("After splicing b after the front, a should be "
+                         + "[  1  10  2  3  33  4  ]: " + a);
+      b.insertBack(Integer.valueOf(11));
+      System.out.println("b should be [  11  ], length 1: " + b + ", " + b.length());
+      Object[] items = a.toArray();
+      System.out.println("a.toArray() should have 6 items, 1 to 4: " + items.length + ", "
+                         + items[0] + " to " + items[5]);
+    } catch (InvalidNodeException lbe) {
+      System.err.println ("Caught InvalidNodeException that should not happen.");
+    }
+  }
+
   public static void main(String[] argv) {
     testEmpty();
+    testBulk();
     List l = new DList();
     l.insertFront(new Integer(3));
     l.insertFront(new Integer(2));
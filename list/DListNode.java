@@ -20,6 +20,13 @@ public class DListNode extends ListNode {
   protected DListNode prev;
   protected DListNode next;
 
+  /**
+   *  token identifies the DList that owns this node (see DListToken); it
+   *  may be forwarded after the node has been moved in bulk, in which case
+   *  myList is out of date until owner() is next called.
+   **/
+  DListToken token;
+
   /**
    *  DListNode() constructor.
    *  @param i the item to store in the node.
@@ -32,6 +39,23 @@ public class DListNode extends ListNode {
     myList = l;
     prev = p;
     next = n;
+    token = l == null ? null : l.token;
+  }
+
+  /**
+   *  owner() returns the DList that contains this node, bringing myList
+   *  up to date.  The node must be valid.
+   *
+   *  @return the list that contains this node.
+   *
+   *  Performance:  runs in amortized O(1) time.
+   */
+  DList owner() {
+    if (token.forward != null) {
+      token = token.resolve();
+      myList = token.list;
+    }
+    return (DList) myList;
   }
 
   /**
@@ -100,9 +124,10 @@ public class DListNode extends ListNode {
     //   what DList it's in.  You should use myList.newNode() to create the
     //   new node.
     else{
+    	DList list = owner();
     	DListNode oldNext = this.next;
-    	this.next = ((DList) myList).newNode(item, (DList) this.myList, this, oldNext);
-    	myList.size++;
+    	this.next = list.newNode(item, list, this, oldNext);
+    	list.size++;
     }
   }
 
@@ -125,9 +150,10 @@ public class DListNode extends ListNode {
     //   what DList it's in.  You should use myList.newNode() to create the
     //   new node.
     else{
+    	DList list = owner();
     	DListNode oldPrev = this.prev;
-    	this.prev = ((DList) myList).newNode(item, (DList) this.myList, this, oldPrev);
-    	myList.size++;
+    	this.prev = list.newNode(item, list, this, oldPrev);
+    	list.size++;
     }
   }
 
@@ -150,10 +176,11 @@ public class DListNode extends ListNode {
     else{
     	prev.next = next;
     	next.prev = prev;
-    	myList.size--;
+    	owner().size--;
     }
     // Make this node an invalid node, so it cannot be used to corrupt myList.
     myList = null;
+    token = null;
     // Set other references to null to improve garbage collection.
     next = null;
     prev = null;
@@ -0,0 +1,54 @@
+/* DListToken.java */
+
+package list;
+
+/**
+ *  A DListToken identifies the DList that owns a group of DListNodes.  When
+ *  a DList hands all of its nodes to another at once (concat, splice), the
+ *  nodes keep their token and the token is forwarded to the receiving
+ *  list's token, so ownership moves in O(1) time and each node finds its
+ *  list the next time it is used.
+ **/
+
+class DListToken {
+
+  /**
+   *  list is the owning DList, valid while forward is null.
+   *  forward is the token this one was merged into, or null.
+   **/
+
+  DList list;
+  DListToken forward;
+
+  /**
+   *  DListToken() constructs a token for a list.
+   *  @param list the list that owns the nodes carrying this token.
+   */
+  DListToken(DList list) {
+    this.list = list;
+  }
+
+  /**
+   *  resolve() returns the token at the end of the forwarding chain,
+   *  pointing every token on the way directly at it.
+   *
+   *  @return the current token.
+   *
+   *  Performance:  runs in amortized O(log n) time, where n is the number
+   *  of tokens merged into the result.
+   */
+  DListToken resolve() {
+    DListToken root = this;
+    while (root.forward != null) {
+      root = root.forward;
+    }
+    DListToken t = this;
+    while (t != root) {
+      DListToken next = t.forward;
+      t.forward = root;
+      t = next;
+    }
+    return root;
+  }
+
+}
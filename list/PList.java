@@ -0,0 +1,230 @@
+/* PList.java */
+
+package list;
+
+/**
+ *  A PList is a persistent (immutable) singly-linked list.  cons() returns a
+ *  new list that shares all of its nodes with the old one, which is left
+ *  unchanged, so one path can branch into many without copying, and lists
+ *  can be kept as results or handed between threads freely.
+ *
+ *  A list created from hashed() also keeps a 64-bit Bloom filter of the
+ *  hash codes of its items, so that contains() answers most queries for
+ *  absent items in O(1) time.  The lists cons()ed onto a hashed list are
+ *  hashed too.
+ *
+ *  Items are compared with equals(), so items that do not override it are
+ *  compared by identity.
+ **/
+
+public final class PList {
+
+  /**
+   *  The empty list.
+   **/
+  public final static PList EMPTY = new PList(null, null, 0, false, 0L);
+
+  private final static PList HASHED_EMPTY = new PList(null, null, 0, true, 0L);
+
+  /**
+   *  item is the first item of the list (null for an empty list).
+   *  rest is the list of the remaining items (null for an empty list).
+   *  length is the number of items.
+   *  hashed tells whether the list keeps a filter.
+   *  filter has bit (hash(x) & 63) set for every item x.
+   **/
+
+  private final Object item;
+  private final PList rest;
+  private final int length;
+  private final boolean hashed;
+  private final long filter;
+
+  private PList(Object item, PList rest, int length, boolean hashed, long filter) {
+    this.item = item;
+    this.rest = rest;
+    this.length = length;
+    this.hashed = hashed;
+    this.filter = filter;
+  }
+
+  /**
+   *  hashed() returns the empty list with a membership filter.
+   *
+   *  @return an empty hashed PList.
+   */
+  public static PList hashed() {
+    return HASHED_EMPTY;
+  }
+
+  /**
+   *  cons() returns the list with "item" in front of the items of this list.
+   *
+   *  @param item the item to add.
+   *  @return a new list of length length() + 1.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public PList cons(Object item) {
+    return new PList(item, this, length + 1, hashed, hashed ? filter | bit(item) : 0L);
+  }
+
+  /**
+   *  isEmpty() returns true if this PList is empty, false otherwise.
+   *
+   *  @return true if this PList is empty, false otherwise.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  /**
+   *  length() returns the length of this PList.
+   *
+   *  @return the length of this PList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   *  head() returns the first item of this PList.
+   *
+   *  @return the first item, or null if the list is empty.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public Object head() {
+    return item;
+  }
+
+  /**
+   *  tail() returns the list of all items but the first.
+   *
+   *  @return the rest of the list, or this list if it is empty.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public PList tail() {
+    return length == 0 ? this : rest;
+  }
+
+  /**
+   *  last() returns the last item of this PList, the one that was cons()ed
+   *  first.
+   *
+   *  @return the last item, or null if the list is empty.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public Object last() {
+    PList l = this;
+    while (l.length > 1) {
+      l = l.rest;
+    }
+    return l.item;
+  }
+
+  /**
+   *  contains() returns true if some item of this PList equals "x".
+   *
+   *  @param x the item being sought.
+   *  @return true if x is in the list.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list; in
+   *  O(1) time for most absent items if the list is hashed.
+   */
+  public boolean contains(Object x) {
+    if (hashed && (filter & bit(x)) == 0) {
+      return false;
+    }
+    for (PList l = this; l.length > 0; l = l.rest) {
+      if (x == null ? l.item == null : x.equals(l.item)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   *  reverse() returns a list of the items of this PList in reverse order.
+   *
+   *  @return a new list.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public PList reverse() {
+    PList result = hashed ? HASHED_EMPTY : EMPTY;
+    for (PList l = this; l.length > 0; l = l.rest) {
+      result = result.cons(l.item);
+    }
+    return result;
+  }
+
+  /**
+   *  toArray() returns the items of this PList, first to last.
+   *
+   *  @return a new array of length length().
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public Object[] toArray() {
+    Object[] result = new Object[length];
+    int i = 0;
+    for (PList l = this; l.length > 0; l = l.rest) {
+      result[i++] = l.item;
+    }
+    return result;
+  }
+
+  /**
+   *  toString() returns a String representation of this PList.
+   *
+   *  @return a String representation of this PList.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[  ");
+    for (PList l = this; l.length > 0; l = l.rest) {
+      result.append(l.item).append("  ");
+    }
+    return result.append("]").toString();
+  }
+
+  //  Returns the filter bit of an item.
+  private static long bit(Object x) {
+    int h = x == null ? 0 : x.hashCode() * 0x9E3779B9;
+    return 1L << (h >>> 26);
+  }
+
+  public static void main(String[] argv) {
+    PList a = EMPTY.cons(Integer.valueOf(3)).cons(Integer.valueOf(2));
+    PList b = a.cons(Integer.valueOf(1));
+    PList c = a.cons(Integer.valueOf(9));
+    System.out.println("a should be [  2  3  ]: " + a);
+    System.out.println("b should be [  1  2  3  ]: " + b);
+    System.out.println("c should be [  9  2  3  ]: " + c);
+    System.out.println("b and c should share their tail: " + (b.tail() == c.tail()));
+    System.out.println("b.last() should be 3: " + b.last());
+    System.out.println("b.reverse() should be [  3  2  1  ]: " + b.reverse());
+    System.out.println("EMPTY.tail().isEmpty() should be true: " + EMPTY.tail().isEmpty());
+    PList h = hashed();
+    for (int i = 0; i < 20; i++) {
+      h = h.cons(Integer.valueOf(i * 7));
+    }
+    int found = 0;
+    for (int i = 0; i < 140; i++) {
+      if (h.contains(Integer.valueOf(i))) {
+        found++;
+      }
+    }
+    System.out.println("h should contain 20 of 0..139: " + found);
+    System.out.println("h.contains(null) should be false: " + h.contains(null));
+  }
+
+}
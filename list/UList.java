@@ -0,0 +1,367 @@
+/* UList.java */
+
+package list;
+
+/**
+ *  A UList is a mutable unrolled linked list ADT.  Items are stored in a
+ *  doubly-linked chain of UListChunks, each holding up to CHUNK items in an
+ *  array, so a traversal touches one chunk per CHUNK items instead of one
+ *  node per item.
+ *
+ *  The UListNodes returned by front(), back(), next() and prev() are
+ *  handles created on first use and kept with their chunk, so the same item
+ *  always yields the same node, and a node stays valid, following its item,
+ *  while other items are inserted and removed around it.
+ **/
+
+public class UList extends List {
+
+  /**
+   *  The number of items a chunk can hold.
+   **/
+  public final static int CHUNK = 16;
+
+  /**
+   *  (inherited)  size is the number of items in the list.
+   *  head references the first chunk and tail the last, or both are null
+   *  if the list is empty.
+   **/
+
+  protected UListChunk head;
+  protected UListChunk tail;
+
+  /* UList invariants:
+   *  1)  Either head == null and tail == null, or head.prev == null,
+   *      tail.next == null, and tail can be reached from head by "next"
+   *      references, with x.next.prev == x for every chunk x before tail.
+   *  2)  Every chunk in the list has 1 <= count <= CHUNK.
+   *  3)  size is the sum of count over all chunks.
+   *  4)  For every chunk x and index i < x.count, if x.handles != null and
+   *      x.handles[i] != null, then x.handles[i].chunk == x,
+   *      x.handles[i].index == i and x.handles[i].myList == this.
+   *  5)  items[i] and handles[i] are null for i >= count.
+   **/
+
+  /**
+   *  UList() constructs an empty UList.
+   **/
+  public UList() {
+    head = null;
+    tail = null;
+    size = 0;
+  }
+
+  /**
+   *  insertFront() inserts an item at the front of this UList.
+   *
+   *  @param item is the item to be inserted.
+   *
+   *  Performance:  runs in O(c) time, where c is CHUNK: the items of the
+   *  first chunk shift up to make room (a full first chunk gets a new,
+   *  empty chunk in front of it instead).
+   **/
+  public void insertFront(Object item) {
+    if (head == null || head.count == CHUNK) {
+      UListChunk c = new UListChunk(CHUNK);
+      link(null, c);
+    }
+    insertAt(head, 0, item);
+  }
+
+  /**
+   *  insertBack() inserts an item at the back of this UList.
+   *
+   *  @param item is the item to be inserted.
+   *
+   *  Performance:  runs in O(1) time.
+   **/
+  public void insertBack(Object item) {
+    if (tail == null || tail.count == CHUNK) {
+      link(tail, new UListChunk(CHUNK));
+    }
+    insertAt(tail, tail.count, item);
+  }
+
+  /**
+   *  front() returns the node at the front of this UList.  If the UList is
+   *  empty, return an "invalid" node--a node with the property that any
+   *  attempt to use it will cause an exception.
+   *
+   *  @return a ListNode at the front of this UList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode front() {
+    return handle(head, 0);
+  }
+
+  /**
+   *  back() returns the node at the back of this UList.  If the UList is
+   *  empty, return an "invalid" node--a node with the property that any
+   *  attempt to use it will cause an exception.
+   *
+   *  @return a ListNode at the back of this UList.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode back() {
+    return handle(tail, tail == null ? 0 : tail.count - 1);
+  }
+
+  /**
+   *  toArray() returns the items of this UList in order, copied chunk by
+   *  chunk without creating any nodes.
+   *
+   *  @return a new array of length length().
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public Object[] toArray() {
+    Object[] result = new Object[size];
+    int n = 0;
+    for (UListChunk c = head; c != null; c = c.next) {
+      System.arraycopy(c.items, 0, result, n, c.count);
+      n += c.count;
+    }
+    return result;
+  }
+
+  /**
+   *  toString() returns a String representation of this UList.
+   *
+   *  @return a String representation of this UList.
+   *
+   *  Performance:  runs in O(n) time, where n is the length of the list.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[  ");
+    for (UListChunk c = head; c != null; c = c.next) {
+      for (int i = 0; i < c.count; i++) {
+        result.append(c.items[i]).append("  ");
+      }
+    }
+    return result.append("]").toString();
+  }
+
+  /**
+   *  handle() returns the node for item i of chunk c, creating it on first
+   *  use, or an invalid node if c is null.
+   *
+   *  @param c the chunk, or null.
+   *  @param i the index of the item in c.
+   *  @return the node for that item.
+   */
+  UListNode handle(UListChunk c, int i) {
+    if (c == null) {
+      return new UListNode(null, null, -1);
+    }
+    if (c.handles == null) {
+      c.handles = new UListNode[c.items.length];
+    }
+    UListNode node = c.handles[i];
+    if (node == null) {
+      node = new UListNode(this, c, i);
+      c.handles[i] = node;
+    }
+    return node;
+  }
+
+  /**
+   *  insertAt() inserts an item at index i of chunk c, splitting c first if
+   *  it is full.
+   *
+   *  @param c a chunk of this list.
+   *  @param i the index the item will have, from 0 to c.count.
+   *  @param item the item to insert.
+   */
+  void insertAt(UListChunk c, int i, Object item) {
+    if (c.count == CHUNK) {
+      int half = CHUNK / 2;
+      UListChunk upper = new UListChunk(CHUNK);
+      link(c, upper);
+      move(c, half, upper, 0, CHUNK - half);
+      c.count = half;
+      upper.count = CHUNK - half;
+      if (i > half) {
+        c = upper;
+        i -= half;
+      }
+    }
+    move(c, i, c, i + 1, c.count - i);
+    c.items[i] = item;
+    if (c.handles != null) {
+      c.handles[i] = null;
+    }
+    c.count++;
+    size++;
+  }
+
+  /**
+   *  removeAt() removes item i of chunk c, merging c with the next chunk if
+   *  together they would fill no more than half a chunk.  The node of the
+   *  item, if any, is left for the caller to invalidate.
+   *
+   *  @param c a chunk of this list.
+   *  @param i the index of the item to remove.
+   */
+  void removeAt(UListChunk c, int i) {
+    move(c, i + 1, c, i, c.count - i - 1);
+    c.count--;
+    c.items[c.count] = null;
+    if (c.handles != null) {
+      c.handles[c.count] = null;
+    }
+    size--;
+    if (c.count == 0) {
+      unlink(c);
+    } else if (c.next != null && c.count + c.next.count <= CHUNK / 2) {
+      UListChunk n = c.next;
+      move(n, 0, c, c.count, n.count);
+      c.count += n.count;
+      unlink(n);
+    }
+  }
+
+  /**
+   *  move() moves "length" items, with their nodes, from index "from" of
+   *  chunk "src" to index "to" of chunk "dst", updating the nodes.  The
+   *  ranges may overlap within one chunk.  Source slots that are not
+   *  overwritten are cleared.
+   */
+  private void move(UListChunk src, int from, UListChunk dst, int to, int length) {
+    if (length <= 0) {
+      return;
+    }
+    System.arraycopy(src.items, from, dst.items, to, length);
+    if (src.handles != null) {
+      if (dst.handles == null) {
+        dst.handles = new UListNode[dst.items.length];
+      }
+      System.arraycopy(src.handles, from, dst.handles, to, length);
+      for (int k = to; k < to + length; k++) {
+        UListNode node = dst.handles[k];
+        if (node != null) {
+          node.chunk = dst;
+          node.index = k;
+        }
+      }
+    } else if (dst.handles != null) {
+      for (int k = to; k < to + length; k++) {
+        dst.handles[k] = null;
+      }
+    }
+    if (src != dst) {
+      for (int k = from; k < from + length; k++) {
+        src.items[k] = null;
+        if (src.handles != null) {
+          src.handles[k] = null;
+        }
+      }
+    }
+  }
+
+  //  Links chunk c into the chain after chunk p (at the front if p is null).
+  private void link(UListChunk p, UListChunk c) {
+    c.prev = p;
+    c.next = p == null ? head : p.next;
+    if (c.next != null) {
+      c.next.prev = c;
+    } else {
+      tail = c;
+    }
+    if (p != null) {
+      p.next = c;
+    } else {
+      head = c;
+    }
+  }
+
+  //  Unlinks chunk c from the chain.
+  private void unlink(UListChunk c) {
+    if (c.prev != null) {
+      c.prev.next = c.next;
+    } else {
+      head = c.next;
+    }
+    if (c.next != null) {
+      c.next.prev = c.prev;
+    } else {
+      tail = c.prev;
+    }
+    c.prev = null;
+    c.next = null;
+  }
+
+  private static void testInvalidNode(ListNode p) {
+    System.out.println("p.isValidNode() should be false: " + p.isValidNode());
+    try {
+      p.item();
+      System.out.println("p.item() should throw an exception, but didn't.");
+    } catch (InvalidNodeException lbe) {
+      System.out.println("p.item() should throw an exception, and did.");
+    }
+    try {
+      p.next();
+      System.out.println("p.next() should throw an exception, but didn't.");
+    } catch (InvalidNodeException lbe) {
+      System.out.println("p.next() should throw an exception, and did.");
+    }
+    try {
+      p.remove();
+      System.out.println("p.remove() should throw an exception, but didn't.");
+    } catch (InvalidNodeException lbe) {
+      System.out.println("p.remove() should throw an exception, and did.");
+    }
+  }
+
+  public static void main(String[] argv) {
+    List l = new UList();
+    System.out.println("An empty list should be [  ]: " + l);
+    testInvalidNode(l.front());
+    for (int i = 1; i <= 40; i++) {
+      l.insertBack(Integer.valueOf(i));
+    }
+    System.out.println("l should hold 1 to 40: " + l);
+    try {
+      ListNode n = l.front();
+      for (int i = 1; i < 20; i++) {
+        n = n.next();
+      }
+      System.out.println("n.item() should be 20: " + n.item());
+      ListNode first = l.front();
+      for (int i = 0; i < 30; i++) {
+        first.insertAfter(Integer.valueOf(100 + i));
+      }
+      System.out.println("After 30 inserts ahead of it, n.item() should still be 20: "
+                         + n.item());
+      System.out.println("l.length() should be 70: " + l.length());
+      ListNode m = n;
+      for (int i = 0; i < 10; i++) {
+        m = m.prev();
+      }
+      System.out.println("m.item() should be 10: " + m.item());
+      System.out.println("l.front().next() should be the same node each time: "
+                         + (l.front().next() == l.front().next()));
+      for (int i = 0; i < 30; i++) {
+        first.next().remove();
+      }
+      System.out.println("After removing the inserts, l should hold 1 to 40: " + l);
+      n.remove();
+      testInvalidNode(n);
+      System.out.println("m.next().item() should be 11: " + m.next().item());
+      int count = 0;
+      for (n = l.back(); n.isValidNode(); n = n.prev()) {
+        count++;
+      }
+      System.out.println("Walking back should visit 39 items: " + count);
+      testInvalidNode(n);
+      Object[] items = ((UList) l).toArray();
+      System.out.println("toArray() should have 39 items, from 1 to 40: " + items.length
+                         + ", " + items[0] + " to " + items[38]);
+    } catch (InvalidNodeException lbe) {
+      System.err.println ("Caught InvalidNodeException that should not happen."
+                          );
+      System.err.println ("Aborting the testing code.");
+    }
+  }
+}
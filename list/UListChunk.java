@@ -0,0 +1,33 @@
+/* UListChunk.java */
+
+package list;
+
+/**
+ *  A UListChunk is one node of a UList's chain: a small array of items and,
+ *  created on demand, the UListNodes handed out for them.
+ **/
+
+class UListChunk {
+
+  /**
+   *  items[0..count) are the items of this chunk, in list order.
+   *  handles[i], if not null, is the UListNode for items[i].  handles is
+   *  null until the first handle in this chunk is requested.
+   *  prev and next reference the neighboring chunks, or null at the ends.
+   **/
+
+  Object[] items;
+  UListNode[] handles;
+  int count;
+  UListChunk prev;
+  UListChunk next;
+
+  /**
+   *  UListChunk() constructs an empty chunk.
+   *  @param capacity the number of items the chunk can hold.
+   */
+  UListChunk(int capacity) {
+    items = new Object[capacity];
+  }
+
+}
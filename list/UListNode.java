@@ -0,0 +1,157 @@
+/* UListNode.java */
+
+package list;
+
+/**
+ *  A UListNode is a handle on one item of a UList (unrolled linked list).
+ *  The item itself lives in an array inside the list; the handle follows
+ *  it as items are inserted and removed around it, and stays valid until
+ *  its own item is removed.
+ **/
+
+public class UListNode extends ListNode {
+
+  /**
+   *  (inherited)  myList references the List that contains this node.
+   *  chunk references the UListChunk holding this node's item.
+   *  index is the position of the item in chunk.items.
+   *  (The inherited item field is unused; the item is chunk.items[index].)
+   **/
+
+  UListChunk chunk;
+  int index;
+
+  /**
+   *  UListNode() constructor.
+   *  @param l the list this node is in, or null for an invalid node.
+   *  @param c the chunk holding the item.
+   *  @param i the index of the item in c.
+   */
+  UListNode(UList l, UListChunk c, int i) {
+    myList = l;
+    chunk = c;
+    index = i;
+  }
+
+  /**
+   *  item() returns this node's item.  If this node is invalid,
+   *  throws an exception.
+   *
+   *  @return the item stored in this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public Object item() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("item() called on invalid node");
+    }
+    return chunk.items[index];
+  }
+
+  /**
+   *  setItem() sets this node's item to "item".  If this node is invalid,
+   *  throws an exception.
+   *
+   *  @param item the new item.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public void setItem(Object item) throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("setItem() called on invalid node");
+    }
+    chunk.items[index] = item;
+  }
+
+  /**
+   *  next() returns the node following this node.  If this node is invalid,
+   *  throws an exception.
+   *
+   *  @return the node following this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode next() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("next() called on invalid node");
+    }
+    if (index + 1 < chunk.count) {
+      return ((UList) myList).handle(chunk, index + 1);
+    }
+    return ((UList) myList).handle(chunk.next, 0);
+  }
+
+  /**
+   *  prev() returns the node preceding this node.  If this node is invalid,
+   *  throws an exception.
+   *
+   *  @return the node preceding this node.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(1) time.
+   */
+  public ListNode prev() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("prev() called on invalid node");
+    }
+    if (index > 0) {
+      return ((UList) myList).handle(chunk, index - 1);
+    }
+    UListChunk p = chunk.prev;
+    return ((UList) myList).handle(p, p == null ? 0 : p.count - 1);
+  }
+
+  /**
+   *  insertAfter() inserts an item immediately following this node.  If this
+   *  node is invalid, throws an exception.
+   *
+   *  @param item the item to be inserted.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(c) time, where c is UList.CHUNK.
+   */
+  public void insertAfter(Object item) throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("insertAfter() called on invalid node");
+    }
+    ((UList) myList).insertAt(chunk, index + 1, item);
+  }
+
+  /**
+   *  insertBefore() inserts an item immediately preceding this node.  If this
+   *  node is invalid, throws an exception.
+   *
+   *  @param item the item to be inserted.
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(c) time, where c is UList.CHUNK.
+   */
+  public void insertBefore(Object item) throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("insertBefore() called on invalid node");
+    }
+    ((UList) myList).insertAt(chunk, index, item);
+  }
+
+  /**
+   *  remove() removes this node from its UList.  If this node is invalid,
+   *  throws an exception.
+   *
+   *  @exception InvalidNodeException if this node is not valid.
+   *
+   *  Performance:  runs in O(c) time, where c is UList.CHUNK.
+   */
+  public void remove() throws InvalidNodeException {
+    if (!isValidNode()) {
+      throw new InvalidNodeException("remove() called on invalid node");
+    }
+    ((UList) myList).removeAt(chunk, index);
+    // Make this node an invalid node, so it cannot be used to corrupt myList.
+    myList = null;
+    chunk = null;
+  }
+
+}
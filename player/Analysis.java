@@ -0,0 +1,45 @@
+/* Analysis.java */
+
+package player;
+
+/**
+ *  The result of analyzing one Position: the best move found, its score
+ *  from the point of view of the player to move, and the principal
+ *  variation (the line both players are expected to play).  A multi-PV
+ *  search returns one Analysis per line, each with its own first move.
+ */
+public class Analysis {
+
+  public final Position position;
+  public final Move best;
+  public final int score;
+  public final Move[] pv;
+  public final long nodes;
+
+  /**
+   *  @param position the analyzed position, or null if the search was not
+   *         started from a Position.
+   *  @param best the best move, or null if the game is already over or
+   *         the player to move has no legal move.
+   *  @param score the score of the best move.
+   *  @param pv the principal variation, starting with best.
+   *  @param nodes the number of nodes searched.
+   */
+  public Analysis(Position position, Move best, int score, Move[] pv, long nodes) {
+    this.position = position;
+    this.best = best;
+    this.score = score;
+    this.pv = pv;
+    this.nodes = nodes;
+  }
+
+  public String toString() {
+    StringBuilder b = new StringBuilder();
+    b.append(best == null ? "none" : Moves.format(best)).append(" score ").append(score).append(" pv");
+    for (int i = 0; i < pv.length; i++) {
+      b.append(' ').append(Moves.format(pv[i]));
+    }
+    return b.toString();
+  }
+
+}
@@ -0,0 +1,319 @@
+/* AnalysisCache.java */
+
+package player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Random;
+
+/**
+ *  A fixed-size table of search results, memory-mapped from a file so that
+ *  results outlive the process and are shared by every process that maps
+ *  the same file.
+ *
+ *  File layout (big-endian):
+ *    int magic, int slot count (a power of two), 8 bytes reserved,
+ *    then the slots, 16 bytes each: { long check, long data }.
+ *
+ *  "data" packs the score (high 32 bits), the move (22 bits, see packMove),
+ *  the bound (2 bits) and the depth (8 bits); "check" is the position key
+ *  xored with data.  Slots are read and written without locks: a slot torn
+ *  by a concurrent writer, in this process or another, fails the check and
+ *  reads as a miss.  Slots come in pairs; a position is stored in the slot
+ *  of its pair that holds the same key, or else in the one with the
+ *  shallower result.
+ *
+ *  Opening a cache checks and, if needed, initializes the header under an
+ *  exclusive lock on the file, and never resizes a file that holds a
+ *  cache: processes asking for another size use the size in the header.
+ *  Keys are chosen by the caller; MachinePlayer mixes its evaluation
+ *  settings into them, so players configured differently do not share
+ *  results, and skips the cache where the game's history could change the
+ *  result.
+ */
+public class AnalysisCache {
+
+  public final static int MAGIC = 0x4E414331;  // "NAC1"
+  final static int HEADER = 16;
+  final static int SLOT = 16;
+  final static int MAX_SLOTS = 1 << 26;
+
+  /**
+   *  Bounds of a stored score.  A search with the full window stores EXACT;
+   *  LOWER and UPPER are for scores from cut-off searches.
+   */
+  public final static int EXACT = 0;
+  public final static int LOWER = 1;
+  public final static int UPPER = 2;
+
+  private static AnalysisCache shared;
+  private static boolean sharedLoaded;
+
+  private final MappedByteBuffer buf;
+  private final int slots;
+
+  /**
+   *  Maps a cache file.  A file that already holds a cache is mapped at the
+   *  size in its header; any other file is (re)created with room for
+   *  "slots" entries.  The magic number is written last, so a file whose
+   *  creation was interrupted is recreated too; no process can have such a
+   *  file mapped.
+   *
+   *  @param file the cache file.
+   *  @param slots the number of entries of a new cache, rounded down to a
+   *         power of two and capped at MAX_SLOTS (one gigabyte).
+   *  @exception IOException if the file cannot be created or mapped, or
+   *             its header is inconsistent with its length.
+   */
+  public AnalysisCache(File file, int slots) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      FileLock lock = channel.lock();
+      try {
+        boolean fresh = raf.length() < HEADER || raf.readInt() != MAGIC;
+        if (fresh) {
+          slots = Integer.highestOneBit(Math.max(2, Math.min(slots, MAX_SLOTS)));
+          raf.setLength(0);
+          raf.setLength(HEADER + (long) slots * SLOT);
+        } else {
+          slots = raf.readInt();
+          if (slots < 2 || slots > MAX_SLOTS || Integer.bitCount(slots) != 1
+              || raf.length() < HEADER + (long) slots * SLOT) {
+            throw new IOException(file + " has a bad header");
+          }
+        }
+        this.slots = slots;
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) slots * SLOT);
+        if (fresh) {
+          buf.putInt(4, slots);
+          buf.putInt(0, MAGIC);
+          buf.force();
+        }
+      } finally {
+        lock.release();
+      }
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   *  shared() returns the cache in the file named by the "network.cache"
+   *  system property, mapping it on first use.  "network.cache.mb" sets the
+   *  size in megabytes (default 16) of a cache created by this call.
+   *  Returns null if no cache is configured or it cannot be mapped.
+   *
+   *  @return the shared cache, or null.
+   */
+  public static synchronized AnalysisCache shared() {
+    if (!sharedLoaded) {
+      sharedLoaded = true;
+      String path = System.getProperty("network.cache");
+      if (path != null) {
+        long bytes = Long.getLong("network.cache.mb", 16) << 20;
+        try {
+          shared = new AnalysisCache(new File(path), (int) Math.min(MAX_SLOTS, bytes / SLOT));
+        } catch (IOException e) {
+          System.err.println("Analysis cache not mapped: " + e.getMessage());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   *  size() returns the number of slots.
+   *
+   *  @return the capacity of the cache.
+   */
+  public int size() {
+    return slots;
+  }
+
+  /**
+   *  probe() looks up a position.
+   *
+   *  @param key the position key.
+   *  @return an Entry, or null if the position is not stored.
+   */
+  public Entry probe(long key) {
+    int first = (int) key & (slots - 2);
+    for (int i = first; i < first + 2; i++) {
+      int offset = HEADER + i * SLOT;
+      long data = buf.getLong(offset + 8);
+      long check = buf.getLong(offset);
+      if ((check ^ data) == key && (data & 0xFF) != 0) {
+        return new Entry(data);
+      }
+    }
+    return null;
+  }
+
+  /**
+   *  store() records a search result.
+   *
+   *  @param key the position key.
+   *  @param depth the depth searched, from 1 to 255.
+   *  @param score the score of the position.
+   *  @param bound EXACT, LOWER or UPPER.
+   *  @param move the best move, on a board at most 32 squares wide.
+   */
+  public void store(long key, int depth, int score, int bound, Move move) {
+    int first = (int) key & (slots - 2);
+    int victim = first;
+    int shallowest = Integer.MAX_VALUE;
+    for (int i = first; i < first + 2; i++) {
+      int offset = HEADER + i * SLOT;
+      long data = buf.getLong(offset + 8);
+      long check = buf.getLong(offset);
+      if ((check ^ data) == key) {
+        if ((data & 0xFF) > depth) {
+          return;
+        }
+        victim = i;
+        break;
+      }
+      if ((data & 0xFF) < shallowest) {
+        shallowest = (int) (data & 0xFF);
+        victim = i;
+      }
+    }
+    long data = ((long) score << 32) | ((long) packMove(move) << 10)
+                | ((long) bound << 8) | Math.min(depth, 255);
+    int offset = HEADER + victim * SLOT;
+    buf.putLong(offset, key ^ data);
+    buf.putLong(offset + 8, data);
+  }
+
+  //  Packs a move into 22 bits: the kind and four 5-bit coordinates.
+  static int packMove(Move m) {
+    return (m.moveKind << 20) | (m.x1 << 15) | (m.y1 << 10) | (m.x2 << 5) | m.y2;
+  }
+
+  static Move unpackMove(int packed) {
+    int x1 = (packed >>> 15) & 31;
+    int y1 = (packed >>> 10) & 31;
+    switch (packed >>> 20) {
+    case Move.ADD:
+      return new Move(x1, y1);
+    case Move.STEP:
+      return new Move(x1, y1, (packed >>> 5) & 31, packed & 31);
+    default:
+      return new Move();
+    }
+  }
+
+  /**
+   *  A result read from the cache.
+   */
+  public static class Entry {
+
+    public final int depth;
+    public final int score;
+    public final int bound;
+    public final Move move;
+
+    Entry(long data) {
+      depth = (int) (data & 0xFF);
+      bound = (int) (data >>> 8) & 3;
+      move = unpackMove((int) (data >>> 10) & 0x3FFFFF);
+      score = (int) (data >>> 32);
+    }
+
+  }
+
+  //  Returns a random position where both sides have placed all their chips
+  //  and neither has a network, White to move.
+  private static Position stepPhase(Random random) {
+    Board board = new Board();
+    for (int placed = 0; placed < 2 * MachinePlayer.CHIPS; ) {
+      char color = placed % 2 == 0 ? 'W' : 'B';
+      int x = random.nextInt(Board.DIM);
+      int y = random.nextInt(Board.DIM);
+      if (board.isLegal(x, y, color)) {
+        board.addPiece(x, y, color);
+        if (board.hasNetwork('W') || board.hasNetwork('B')) {
+          board.removePiece(x, y);
+        } else {
+          placed++;
+        }
+      }
+    }
+    Snapshot snapshot = Snapshot.of(board);
+    char[][] cells = new char[Board.DIM][Board.DIM];
+    for (int x = 0; x < Board.DIM; x++) {
+      for (int y = 0; y < Board.DIM; y++) {
+        cells[x][y] = snapshot.get(x, y);
+      }
+    }
+    return new Position(cells, 'W');
+  }
+
+  //  Returns a player for White in "position" after White has stepped a chip
+  //  by "m" and back, and Black one of its chips away and back, so that the
+  //  position after "m" has occurred before.
+  private static MachinePlayer repeated(Position position, int depth, Move m) {
+    Move back = new Move(m.x2, m.y2, m.x1, m.y1);
+    for (int from = 0; from < Board.DIM * Board.DIM; from++) {
+      for (int to = 0; to < Board.DIM * Board.DIM; to++) {
+        Move step = new Move(to / Board.DIM, to % Board.DIM, from / Board.DIM, from % Board.DIM);
+        Move undo = new Move(step.x2, step.y2, step.x1, step.y1);
+        MachinePlayer player = new MachinePlayer(position, depth);
+        if (player.forceMove(m) && player.opponentMove(step) && player.forceMove(back)
+            && player.opponentMove(undo)) {
+          return player;
+        }
+      }
+    }
+    throw new IllegalStateException("Black cannot step a chip away and back");
+  }
+
+  //  Searches a position that neither side wins within the search depth,
+  //  fresh and after a repetition, with and without a cache, in both
+  //  orders; the cache must not hand either search the other's result.
+  public static void main(String[] args) throws IOException {
+    int depth = 3;
+    Random random = new Random(1);
+    Position position;
+    MachinePlayer player;
+    Best fresh;
+    do {
+      position = stepPhase(random);
+      player = new MachinePlayer(position, depth);
+      player.setAnalysisCache(null);
+      fresh = player.searchPosition();
+    } while (fresh.score >= Integer.MAX_VALUE - depth || fresh.score == Integer.MIN_VALUE);
+    player = repeated(position, depth, fresh.m);
+    player.setAnalysisCache(null);
+    Best repeated = player.searchPosition();
+    if (fresh.score == repeated.score) {
+      System.out.println("FAILED: the repetition does not change the score " + fresh.score);
+      System.exit(1);
+    }
+    for (int order = 0; order < 2; order++) {
+      File file = File.createTempFile("analysis", ".cache");
+      file.deleteOnExit();
+      AnalysisCache cache = new AnalysisCache(file, 1 << 10);
+      for (int i = 0; i < 2; i++) {
+        boolean isFresh = i == order;
+        player = isFresh ? new MachinePlayer(position, depth) : repeated(position, depth, fresh.m);
+        player.setAnalysisCache(cache);
+        int score = player.searchPosition().score;
+        int expected = isFresh ? fresh.score : repeated.score;
+        if (score != expected) {
+          System.out.println("FAILED: " + (isFresh ? "fresh" : "repeated") + " position scored "
+                             + score + ", not " + expected);
+          System.exit(1);
+        }
+      }
+    }
+    System.out.println("fresh score " + fresh.score + ", after a repetition " + repeated.score
+                       + ", in both orders with a cache");
+  }
+
+}
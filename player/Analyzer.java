@@ -0,0 +1,145 @@
+/* Analyzer.java */
+
+package player;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  Analyzes batches of positions in parallel on a ForkJoinPool.
+ *
+ *  A MachinePlayer searches by mutating its own board, so each position is
+ *  searched by a fresh player built for that position alone; tasks share
+ *  nothing but the immutable Position objects.
+ */
+public class Analyzer {
+
+  private final ForkJoinPool pool;
+  private final int depth;
+
+  /**
+   *  Creates an analyzer that runs on the common pool.
+   *
+   *  @param depth the search depth used for every position.
+   */
+  public Analyzer(int depth) {
+    this(depth, ForkJoinPool.commonPool());
+  }
+
+  /**
+   *  @param depth the search depth used for every position.
+   *  @param pool the pool the searches run on.
+   */
+  public Analyzer(int depth, ForkJoinPool pool) {
+    this.depth = depth;
+    this.pool = pool;
+  }
+
+  /**
+   *  analyze() searches a single position on the calling thread.
+   *
+   *  @param position the position to analyze.
+   *  @return the best move, score and principal variation; with no legal
+   *          move, no best move and the score of the position itself.
+   */
+  public Analysis analyze(Position position) {
+    MachinePlayer player = new MachinePlayer(position, depth);
+    try {
+      Best best = player.searchPosition();
+      return new Analysis(position, best.m, best.score, player.principalVariation(best.m),
+                          player.nodes());
+    } finally {
+      player.close();
+    }
+  }
+
+  /**
+   *  analyze() finds the k best moves of a position, each with an exact
+   *  score and principal variation.  See MachinePlayer.topMoves.
+   *
+   *  @param position the position to analyze.
+   *  @param k the number of lines wanted.
+   *  @return up to k analyses, best first.
+   */
+  public Analysis[] analyze(Position position, int k) {
+    MachinePlayer player = new MachinePlayer(position, depth);
+    try {
+      return player.searchLines(position, k);
+    } finally {
+      player.close();
+    }
+  }
+
+  /**
+   *  analyze() searches every position of a batch in parallel and waits for
+   *  all of them.
+   *
+   *  @param positions the positions to analyze.
+   *  @return the analyses, in the same order as positions.
+   */
+  public Analysis[] analyze(Position[] positions) {
+    Analysis[] results = new Analysis[positions.length];
+    pool.invoke(new Batch(positions, results, 0, positions.length));
+    return results;
+  }
+
+  /**
+   *  Analyzes positions[lo..hi), splitting in halves until one position is
+   *  left.  Each position is a whole search, so there is no point in a
+   *  larger sequential threshold.
+   */
+  private class Batch extends RecursiveAction {
+
+    private final static long serialVersionUID = 1L;
+
+    private final Position[] positions;
+    private final Analysis[] results;
+    private final int lo;
+    private final int hi;
+
+    Batch(Position[] positions, Analysis[] results, int lo, int hi) {
+      this.positions = positions;
+      this.results = results;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    protected void compute() {
+      if (hi - lo <= 1) {
+        if (hi > lo) {
+          results[lo] = analyze(positions[lo]);
+        }
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      invokeAll(new Batch(positions, results, lo, mid),
+                new Batch(positions, results, mid, hi));
+    }
+  }
+
+  //  Analyzes a 4 x 4 position where White, to move, has no legal add: each
+  //  empty square it may use would make a cluster.  Every analysis must
+  //  come back without a best move or a line.
+  public static void main(String[] args) {
+    String[] rows = { ".BB.", ".W.W", "WB.W", ".B.." };
+    char[][] cells = new char[rows.length][rows.length];
+    for (int x = 0; x < rows.length; x++) {
+      for (int y = 0; y < rows.length; y++) {
+        cells[x][y] = rows[y].charAt(x);
+      }
+    }
+    Position position = new Position(cells, 'W');
+    Analyzer analyzer = new Analyzer(3);
+    Analysis single = analyzer.analyze(position);
+    Analysis[] lines = analyzer.analyze(position, 3);
+    Analysis[] batch = analyzer.analyze(new Position[] {position, position});
+    if (single.best != null || single.pv.length != 0 || lines.length != 0
+        || batch[0].best != null || batch[1].best != null) {
+      System.out.println("FAILED: " + single + ", " + lines.length + " lines, batch "
+                         + batch[0] + "; " + batch[1]);
+      System.exit(1);
+    }
+    System.out.println("no legal moves: " + single);
+  }
+
+}
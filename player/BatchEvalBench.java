@@ -0,0 +1,90 @@
+/* BatchEvalBench.java */
+
+package player;
+
+import java.util.Random;
+
+import list.*;
+
+/**
+ *  Checks BatchEval against Board.connects and compares their speed.
+ *
+ *  Usage:  java player.BatchEvalBench [positions [rounds]]
+ *
+ *  Random positions with up to ten chips per color are scored three ways:
+ *  Board.connects (the scalar reference used by boardEval), the one-position
+ *  bitboard BatchEval.connects, and the batched BatchEval.connects.  Any
+ *  disagreement is reported and ends the run.  Each timing is taken after a
+ *  warm-up round, and the best of several rounds is printed.
+ */
+public class BatchEvalBench {
+
+  public static void main(String[] args) {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    Random random = new Random(1);
+    Board[] boards = new Board[n];
+    long[] black = new long[n];
+    long[] white = new long[n];
+    for (int i = 0; i < n; i++) {
+      boards[i] = new Board();
+      int chips = random.nextInt(21);
+      for (int c = 0; c < chips; c++) {
+        int x = random.nextInt(Board.DIM);
+        int y = random.nextInt(Board.DIM);
+        if (boards[i].getContents(x, y) == null) {
+          boards[i].addPiece(x, y, c % 2 == 0 ? 'W' : 'B');
+        }
+      }
+      black[i] = boards[i].bits('B')[0];
+      white[i] = boards[i].bits('W')[0];
+    }
+
+    BatchEval batch = new BatchEval();
+    int[] out = new int[n];
+    batch.connects(black, white, n, out);
+    for (int i = 0; i < n; i++) {
+      int expected = boards[i].connects(new DList(), 'B');
+      if (out[i] != expected || BatchEval.connects(black[i], white[i]) != expected) {
+        System.out.println("MISMATCH at position " + i + ": connects " + expected
+                           + ", batch " + out[i] + ", bitboard " + BatchEval.connects(black[i], white[i]));
+        boards[i].printBoard();
+        System.exit(1);
+      }
+    }
+    System.out.println(n + " positions agree");
+
+    long scalar = Long.MAX_VALUE;
+    long single = Long.MAX_VALUE;
+    long batched = Long.MAX_VALUE;
+    int sink = 0;
+    for (int r = 0; r <= rounds; r++) {
+      long t0 = System.nanoTime();
+      for (int i = 0; i < n; i++) {
+        sink += boards[i].connects(new DList(), 'B');
+      }
+      long t1 = System.nanoTime();
+      for (int i = 0; i < n; i++) {
+        sink += BatchEval.connects(black[i], white[i]);
+      }
+      long t2 = System.nanoTime();
+      batch.connects(black, white, n, out);
+      sink += out[n - 1];
+      long t3 = System.nanoTime();
+      if (r > 0) {
+        scalar = Math.min(scalar, t1 - t0);
+        single = Math.min(single, t2 - t1);
+        batched = Math.min(batched, t3 - t2);
+      }
+    }
+    System.out.println("Board.connects      " + format(scalar, n));
+    System.out.println("bitboard, 1 at once " + format(single, n));
+    System.out.println("bitboard, batched   " + format(batched, n));
+    System.out.println("(checksum " + sink + ")");
+  }
+
+  private static String format(long nanos, int n) {
+    return Math.round(nanos * 10.0 / n) / 10.0 + " ns/position";
+  }
+
+}
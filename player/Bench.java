@@ -0,0 +1,91 @@
+/* Bench.java */
+
+package player;
+
+import java.io.PrintStream;
+
+/**
+ *  Searches a fixed set of positions to a fixed depth on one thread and
+ *  reports the total node count, the time and the nodes per second.
+ *
+ *  Usage:  java player.Bench [depth]
+ *
+ *  The node count is a signature of the search: it changes with any change
+ *  to move generation, ordering, pruning or evaluation, and stays the same
+ *  across changes that only make the search faster.  Comparing signatures
+ *  before and after a change tells the two kinds apart.  The opening book,
+ *  the analysis cache and the evaluation network are disabled and the
+ *  default evaluation weights are used, so the signature depends on the
+ *  code alone, except that -Dnetwork.repetition should be left at its
+ *  default.  (-Dnetwork.eval.scalar, for one, must not change it.)
+ */
+public class Bench {
+
+  final static int DEFAULT_DEPTH = 4;
+
+  //  The positions, as the moves leading to them from the empty board
+  //  (white plays first).  They cover the start, the add phase and the
+  //  step phase.
+  final static String[][] POSITIONS = {
+    {},
+    {"1,4", "6,4"},
+    {"4,5", "1,2", "0,5", "2,2", "1,6", "2,7"},
+    {"6,3", "1,7", "4,5", "3,1", "2,1", "2,5", "2,3", "4,3", "0,1", "1,1"},
+    {"6,3", "2,3", "0,2", "2,7", "2,2", "6,0", "2,4", "1,2", "0,4", "1,6", "2,6", "4,4", "4,2",
+     "4,6", "4,3"},
+    {"7,6", "4,4", "7,2", "4,5", "2,3", "1,0", "3,2", "4,2", "2,6", "2,4", "3,5", "6,6", "6,5",
+     "6,4", "5,3", "1,1", "5,2", "6,2", "7,3"},
+    {"3,2", "1,1", "0,1", "2,3", "4,6", "6,1", "2,1", "1,3", "3,5", "1,6", "5,2", "2,5", "5,1",
+     "3,1", "1,5", "4,2", "5,4", "4,4", "6,4", "4,5", "0,1-6,6", "6,1-6,5"},
+    {"1,5", "1,6", "1,3", "6,4", "7,1", "4,3", "3,5", "3,4", "4,4", "3,1", "1,1", "1,2", "2,3",
+     "6,2", "4,2", "6,1", "4,1", "1,4", "2,1", "3,6", "7,1-6,3", "1,2-2,2", "2,1-0,1"},
+    {"4,6", "3,3", "0,2", "6,0", "6,5", "3,2", "3,5", "1,3", "4,3", "4,5", "2,3", "5,4", "1,6",
+     "2,5", "1,4", "1,5", "5,3", "1,0", "2,1", "5,1", "0,2-0,1", "6,0-1,1", "6,5-3,1"}
+  };
+
+  /**
+   *  run() searches every position and prints one line per position and a
+   *  summary.
+   *
+   *  @param depth the search depth.
+   *  @param out the stream the report is written to.
+   *  @return the total node count.
+   */
+  public static long run(int depth, PrintStream out) {
+    long total = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < POSITIONS.length; i++) {
+      MachinePlayer player = new MachinePlayer(position(POSITIONS[i]), depth);
+      player.setOpeningBook(null);
+      player.setAnalysisCache(null);
+      player.setNeuralEval(null);
+      player.setEvalWeights(EvalWeights.DEFAULT);
+      Best best = player.searchPosition();
+      total += player.nodes();
+      out.println("position " + (i + 1) + ": " + player.nodes() + " nodes, bestmove "
+                  + (best.m == null ? "(none)" : Moves.format(best.m)) + " score " + best.score);
+      player.close();
+    }
+    long nanos = Math.max(1, System.nanoTime() - start);
+    out.println("bench depth " + depth + ": " + total + " nodes in " + nanos / 1000000 + " ms, "
+                + (long) (total * 1e9 / nanos) + " nps");
+    out.println("signature " + total);
+    return total;
+  }
+
+  //  Returns the position after the given moves.
+  private static Position position(String[] moves) {
+    Move[] m = new Move[moves.length];
+    for (int i = 0; i < moves.length; i++) {
+      m[i] = Moves.parse(moves[i]);
+    }
+    Position[] positions = Position.gamePositions(m);
+    return positions[positions.length - 1];
+  }
+
+  public static void main(String[] args) {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+    run(depth, System.out);
+  }
+
+}
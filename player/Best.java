@@ -0,0 +1,33 @@
+/* Best.java */
+
+package player;
+
+/**
+ *  Contains the current Best move and its corresponding score.
+ *
+ */
+class Best {
+
+  public Move m;
+  public int score;
+
+/**
+ *  Creates a Best with a default move of QUIT and a score of zero.
+ */
+  public Best() {
+    m = new Move();
+    score = 0;
+  }
+
+/**
+ *  Creates a Best with the move passed in and its corresponding score.
+ * 
+ *  @param m the Move being assigned
+ *  @param score the score of the board when this Move is made
+ */
+  public Best(Move m, int score) {
+    this.m = m;
+    this.score = score;
+  }
+
+}
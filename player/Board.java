@@ -7,6 +7,11 @@ import list.*;
 /**
  * Represents the Board that is used for the game Network as an array of Piece objects. 
  * 
+ * Boards default to the standard DIM x DIM size but may be any size from
+ * MIN_DIM to MAX_DIM.  Alongside the Piece array, each board keeps one bitset
+ * of occupied squares per color (multi-word, square (x, y) at bit x * dim + y),
+ * which lets hasNetwork reject most positions without a full search.
+ * 
  *  @author victors
  *  @author parthivm
  */
@@ -14,8 +19,130 @@ import list.*;
 public class Board {
 
 	public final static int DIM = 8;
+	public final static int MIN_DIM = 4;
+	public final static int MAX_DIM = 32;
+
+	/**
+	 * The minimum number of chips in a network.
+	 */
+	public final static int NETWORK_LENGTH = 6;
+
+	/**
+	 * Directions in the order checkNetwork and connects try them: NW, W, SW,
+	 * N, S, NE, E, SE.  Direction 7 - d is the opposite of direction d.
+	 */
+	final static int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+	final static int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+	/**
+	 * Zobrist keys for each board size, created on first use.  A key is
+	 * derived from its index alone so that hashes (and anything stored under
+	 * them on disk) stay stable across runs.  The keys of the standard size
+	 * come precomputed from Tables.
+	 */
+	private final static long[][] ZOBRIST = new long[MAX_DIM + 1][];
+
+	static {
+		ZOBRIST[Tables.DIM] = Tables.ZOBRIST;
+	}
+
+	protected final int dim;
+
+	protected Piece[][] board;
+
+	/**
+	 * Occupied squares of each color; square (x, y) is bit x * dim + y.
+	 */
+	protected final long[] black;
+	protected final long[] white;
+
+	/**
+	 * Placement masks for the rule against groups of three.  adjacent[s]
+	 * counts the chips of a color next to square s, and paired[s] counts those
+	 * of them that already have a neighbor of their own color.  A chip may be
+	 * added on an empty square s outside the corners and the opponent's goals
+	 * exactly when adjacent[s] < 2 and paired[s] == 0; legal has a bit set
+	 * for each such square.  All are kept up to date by addPiece and
+	 * removePiece, which only touch the squares around the chip.
+	 */
+	private final byte[] blackAdjacent;
+	private final byte[] whiteAdjacent;
+	private final byte[] blackPaired;
+	private final byte[] whitePaired;
+	private final long[] blackLegal;
+	private final long[] whiteLegal;
+
+	private final long[] zobrist;
+
+	private long hash;
+
+	/**
+	 * Counts hasNetwork and connects calls so that one in every
+	 * NetworkCheckEvent.SAMPLE_PERIOD can be timed for Flight Recorder.
+	 */
+	private int sampleTick;
+
+	/**
+	 * Constructs an empty board of the standard size.
+	 */
+	public Board() {
+		this(DIM);
+	}
+
+	/**
+	 * Constructs an empty dim x dim board.
+	 * 
+	 * @param dim the number of squares along each side
+	 */
+	public Board(int dim) {
+		if (dim < MIN_DIM || dim > MAX_DIM) {
+			throw new IllegalArgumentException("board size " + dim + " is not between " + MIN_DIM + " and " + MAX_DIM);
+		}
+		this.dim = dim;
+		board = new Piece[dim][dim];
+		int words = (dim * dim + 63) >>> 6;
+		black = new long[words];
+		white = new long[words];
+		blackAdjacent = new byte[dim * dim];
+		whiteAdjacent = new byte[dim * dim];
+		blackPaired = new byte[dim * dim];
+		whitePaired = new byte[dim * dim];
+		if (dim == Tables.DIM) {
+			blackLegal = Tables.BLACK_LEGAL.clone();
+			whiteLegal = Tables.WHITE_LEGAL.clone();
+		} else {
+			blackLegal = legalTemplate(dim, 'B');
+			whiteLegal = legalTemplate(dim, 'W');
+		}
+		zobrist = zobristKeys(dim);
+	}
 
-	protected Piece[][] board = new Piece[DIM][DIM];
+	/**
+	 * Returns the placement mask of an empty board: the squares outside the
+	 * corners and the opponent's goals.
+	 * 
+	 * @param dim the board dimension
+	 * @param color the color of the chip that would be added
+	 * @return the legal squares, square (x, y) at bit x * dim + y
+	 */
+	static long[] legalTemplate(int dim, char color) {
+		long[] legal = new long[(dim * dim + 63) >>> 6];
+		for (int i = 1; i < dim - 1; i++) {
+			for (int j = 0; j < dim; j++) {
+				set(legal, color == 'B' ? i * dim + j : j * dim + i);
+			}
+		}
+		return legal;
+	}
+
+	/**
+	 * Returns the number of squares along each side of the board.
+	 * 
+	 * @return the board dimension
+	 */
+	public int dim() {
+		return dim;
+	}
 
 	/**
 	 * Adds a Piece object to a particular coordinate (x, y) on the board.
@@ -26,6 +153,10 @@ public class Board {
 	 */
 	public void addPiece(int x, int y, char color) {
 		board[x][y] = new Piece(color, this, x, y);
+		set(color == 'B' ? black : white, x * dim + y);
+		hash ^= zobrist(x, y, color);
+		cluster(x, y, color, 1);
+		updateLegal(x, y, color == 'B' ? 'W' : 'B');
 	}
 
 	/**
@@ -35,7 +166,253 @@ public class Board {
 	 * @param y the y coordinate
 	 */
 	public void removePiece(int x, int y) {
-		board[x][y] = null;
+		if (board[x][y] != null) {
+			char color = board[x][y].color();
+			board[x][y] = null;
+			clear(color == 'B' ? black : white, x * dim + y);
+			hash ^= zobrist(x, y, color);
+			cluster(x, y, color, -1);
+			updateLegal(x, y, color == 'B' ? 'W' : 'B');
+		}
+	}
+
+	/**
+	 * Updates the placement masks of a color for a chip of that color added
+	 * (delta 1) or removed (delta -1) at (x, y).  The chip must already be
+	 * in, or out of, the bitsets.
+	 * 
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param color the color of the chip
+	 * @param delta 1 for an added chip, -1 for a removed one
+	 */
+	private void cluster(int x, int y, char color, int delta) {
+		long[] own = color == 'B' ? black : white;
+		byte[] adjacent = color == 'B' ? blackAdjacent : whiteAdjacent;
+		if (adjacent[x * dim + y] > 0) {
+			pair(x, y, color, delta);
+		}
+		for (int d = 0; d < 8; d++) {
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (nx < 0 || ny < 0 || nx >= dim || ny >= dim) {
+				continue;
+			}
+			int n = nx * dim + ny;
+			adjacent[n] += delta;
+			updateLegal(nx, ny, color);
+			if (test(own, n) && adjacent[n] == (delta > 0 ? 1 : 0)) {
+				pair(nx, ny, color, delta);
+			}
+		}
+		updateLegal(x, y, color);
+	}
+
+	/**
+	 * Counts the chip at (x, y) as paired (delta 1) or no longer paired
+	 * (delta -1) for the squares around it.
+	 * 
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param color the color of the chip
+	 * @param delta 1 or -1
+	 */
+	private void pair(int x, int y, char color, int delta) {
+		byte[] paired = color == 'B' ? blackPaired : whitePaired;
+		for (int d = 0; d < 8; d++) {
+			int nx = x + DX[d];
+			int ny = y + DY[d];
+			if (nx >= 0 && ny >= 0 && nx < dim && ny < dim) {
+				paired[nx * dim + ny] += delta;
+				updateLegal(nx, ny, color);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the legal bit of a color for square (x, y).
+	 * 
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param color the color of the chip that would be added
+	 */
+	private void updateLegal(int x, int y, char color) {
+		int s = x * dim + y;
+		boolean legal;
+		if (color == 'B') {
+			legal = x > 0 && x < dim - 1 && blackAdjacent[s] < 2 && blackPaired[s] == 0;
+		} else {
+			legal = y > 0 && y < dim - 1 && whiteAdjacent[s] < 2 && whitePaired[s] == 0;
+		}
+		if (legal && board[x][y] == null) {
+			set(color == 'B' ? blackLegal : whiteLegal, s);
+		} else {
+			clear(color == 'B' ? blackLegal : whiteLegal, s);
+		}
+	}
+
+	/**
+	 * Returns true if a chip of a color may be added at (x, y): the square is
+	 * empty, is not a corner or one of the opponent's goals, and the chip
+	 * would not join a group of three or more chips of its color.  Runs in
+	 * constant time.
+	 * 
+	 * @param x the x coordinate, from 0 to dim - 1
+	 * @param y the y coordinate, from 0 to dim - 1
+	 * @param color the color of the chip
+	 * @return true if the chip may be added
+	 */
+	public boolean isLegal(int x, int y, char color) {
+		return test(color == 'B' ? blackLegal : whiteLegal, x * dim + y);
+	}
+
+	/**
+	 * Returns the bitset of squares where a chip of a color may be added, as
+	 * isLegal reports them.  The array is the board's own and must not be
+	 * modified.
+	 * 
+	 * @param color the color of the chip
+	 * @return the legal squares, square (x, y) at bit x * dim + y
+	 */
+	long[] legal(char color) {
+		return color == 'B' ? blackLegal : whiteLegal;
+	}
+
+	/**
+	 * Returns the number of pieces of a color on the board.
+	 * 
+	 * @param color the color of the pieces
+	 * @return the number of pieces of that color
+	 */
+	public int count(char color) {
+		long[] bits = color == 'B' ? black : white;
+		int n = 0;
+		for (int i = 0; i < bits.length; i++) {
+			n += Long.bitCount(bits[i]);
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the number of pieces of a color in one of its goal areas.
+	 *
+	 * @param color the color of the pieces
+	 * @param far false for the goal at y == 0 (black) or x == 0 (white), true
+	 *        for the opposite one
+	 * @return the number of pieces of that color in the goal area
+	 */
+	int goalChips(char color, boolean far) {
+		long[] own = color == 'B' ? black : white;
+		int n = 0;
+		for (int i = 1; i < dim - 1; i++) {
+			int sq;
+			if (color == 'B') {
+				sq = far ? i * dim + dim - 1 : i * dim;
+			} else {
+				sq = far ? (dim - 1) * dim + i : i;
+			}
+			if (test(own, sq)) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the bitset of squares occupied by a color.  The array is the
+	 * board's own and must not be modified.
+	 * 
+	 * @param color the color of the pieces
+	 * @return the occupied squares, square (x, y) at bit x * dim + y
+	 */
+	long[] bits(char color) {
+		return color == 'B' ? black : white;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the pieces on the board.  The hash is updated
+	 * incrementally by addPiece and removePiece.
+	 * 
+	 * @return the hash of the current placement of pieces
+	 */
+	public long hash() {
+		return hash;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the board together with the side to move, for
+	 * use as a key into books and caches.
+	 * 
+	 * @param toMove the color of the player to move
+	 * @return the hash of the position
+	 */
+	public long hash(char toMove) {
+		return toMove == 'W' ? hash ^ zobrist[2 * dim * dim] : hash;
+	}
+
+	/**
+	 * Returns the Zobrist key of a piece of a given color at (x, y).
+	 * 
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param color the color of the piece
+	 * @return the key that is xored into the hash for that piece
+	 */
+	long zobrist(int x, int y, char color) {
+		return zobrist[(color == 'W' ? dim * dim : 0) + x * dim + y];
+	}
+
+	/**
+	 * Returns the Zobrist keys of a board size: one per color and square, then
+	 * the white-to-move key.
+	 * 
+	 * @param dim the board dimension
+	 * @return the shared key table for that size
+	 */
+	private static synchronized long[] zobristKeys(int dim) {
+		if (ZOBRIST[dim] == null) {
+			ZOBRIST[dim] = computeZobristKeys(dim);
+		}
+		return ZOBRIST[dim];
+	}
+
+	/**
+	 * Computes the Zobrist keys of a board size, as zobristKeys returns them.
+	 * 
+	 * @param dim the board dimension
+	 * @return a new key table
+	 */
+	static long[] computeZobristKeys(int dim) {
+		long[] keys = new long[2 * dim * dim + 1];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = mix(i);
+		}
+		return keys;
+	}
+
+	/**
+	 * A SplitMix64 finalizer, used to derive Zobrist keys from their index.
+	 * 
+	 * @param i the index of the key
+	 * @return a well-mixed 64-bit key
+	 */
+	private static long mix(long i) {
+		long z = 0x9E3779B97F4A7C15L * (i + 1);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	static void set(long[] bits, int i) {
+		bits[i >>> 6] |= 1L << i;
+	}
+
+	static void clear(long[] bits, int i) {
+		bits[i >>> 6] &= ~(1L << i);
+	}
+
+	static boolean test(long[] bits, int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
 	}
 
 	/**
@@ -79,44 +456,104 @@ public class Board {
 	 * @return true or false depending on if there is a network or not
 	 */
 	public boolean hasNetwork(char color) {
-		DList chain = new DList();
-		if (color == 'B') {
-			for (int i = 0; i < DIM - 1; i++) {
-				for (int j = 0; j < DIM - 1; j++) {
-					chain = new DList();
-					if (getContents(j, i) != null && getContents(j, i).color() == 'B') {
-						chain.insertBack(getContents(j, i));
-						if (checkNetwork(chain, color, -1)) {
-							return true;
-						}
-						try {
-							chain.front().remove();
-						} catch (InvalidNodeException e) {
-							break;
-						}
-					}
+		if ((++sampleTick & NetworkCheckEvent.SAMPLE_MASK) != 0) {
+			return findNetwork(color);
+		}
+		NetworkCheckEvent event = new NetworkCheckEvent();
+		event.begin();
+		boolean found = findNetwork(color);
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = "hasNetwork";
+			event.color = color;
+			event.result = found ? 1 : 0;
+			event.commit();
+		}
+		return found;
+	}
+
+	/**
+	 * Searches for a network of a particular color.  First checks, with a
+	 * breadth-first search over the bitsets, that the goal areas are connected
+	 * at all; only then starts a chain from each piece in the first goal area.
+	 * 
+	 * @param color the color of the player
+	 * @return true or false depending on if there is a network or not
+	 */
+	private boolean findNetwork(char color) {
+		if (!goalsConnected(color)) {
+			return false;
+		}
+		for (int i = 1; i < dim - 1; i++) {
+			Piece start = color == 'B' ? getContents(i, 0) : getContents(0, i);
+			if (start != null && start.color() == color) {
+				if (checkNetwork(PList.hashed().cons(start), color, -1)) {
+					return true;
 				}
 			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a piece in a color's second goal area can be reached from
+	 * one in its first by hopping between pieces of that color along clear
+	 * lines, ignoring the length and turning rules of a network.  Every network
+	 * is such a path, so false means there is certainly no network.
+	 * 
+	 * @param color the color of the player
+	 * @return false if the goal areas are not connected
+	 */
+	boolean goalsConnected(char color) {
+		long[] own = color == 'B' ? black : white;
+		boolean startGoal = false;
+		boolean endGoal = false;
+		for (int i = 1; i < dim - 1; i++) {
+			int start = color == 'B' ? i * dim : i;
+			int end = color == 'B' ? i * dim + dim - 1 : (dim - 1) * dim + i;
+			startGoal |= test(own, start);
+			endGoal |= test(own, end);
+		}
+		if (!startGoal || !endGoal) {
 			return false;
-		} else {
-			for (int i = 0; i < DIM - 1; i++) {
-				for (int j = 0; j < DIM - 1; j++) {
-					chain = new DList();
-					if (getContents(i, j) != null && getContents(i, j).color() == 'W') {
-						chain.insertBack(getContents(i, j));
-						if (checkNetwork(chain, color, -1)) {
-							return true;
-						}
-						try {
-							chain.front().remove();
-						} catch (InvalidNodeException e) {
-							break;
-						}
+		}
+
+		long[] visited = new long[own.length];
+		int[] queue = new int[dim * dim];
+		int head = 0;
+		int tail = 0;
+		for (int i = 1; i < dim - 1; i++) {
+			int start = color == 'B' ? i * dim : i;
+			if (test(own, start)) {
+				set(visited, start);
+				queue[tail++] = start;
+			}
+		}
+		while (head < tail) {
+			int sq = queue[head++];
+			int x0 = sq / dim;
+			int y0 = sq % dim;
+			for (int d = 0; d < 8; d++) {
+				int x = x0;
+				int y = y0;
+				do {
+					x += DX[d];
+					y += DY[d];
+				} while (x > 0 && y > 0 && x < dim && y < dim && board[x][y] == null);
+				if (x <= 0 || y <= 0 || x >= dim || y >= dim) {
+					continue;
+				}
+				int next = x * dim + y;
+				if (test(own, next) && !test(visited, next)) {
+					if (color == 'B' ? y == dim - 1 : x == dim - 1) {
+						return true;
 					}
+					set(visited, next);
+					queue[tail++] = next;
 				}
 			}
-			return false;
 		}
+		return false;
 	}
 
 	/**
@@ -130,289 +567,76 @@ public class Board {
 	 * @return true or false depending on whether a network was found 
 	 */
 	public boolean checkNetwork(DList chain, char color, int dir) {
+		PList path = PList.hashed();
 		try {
-			//System.out.println("Checking for network starting from " + ((Piece)chain.back().item()).x() + "," + ((Piece)chain.back().item()).y());
-			if (color == 'B' && ((Piece)chain.back().item()).y() == DIM - 1 && ((Piece)chain.front().item()).y() == 0) {
-				if (chain.length() >= 6) {
-					return true;
-				} else {
-					return false;
-				}
-			} else if (color == 'W' && ((Piece)chain.back().item()).x() == DIM - 1 && ((Piece)chain.front().item()).x() == 0) {
-				if (chain.length() >= 6) {
-					return true;
-				} else {
-					return false;
-				}
+			for (ListNode n = chain.front(); n.isValidNode(); n = n.next()) {
+				path = path.cons(n.item());
 			}
+		} catch (InvalidNodeException e) {
+			return false;
+		}
+		return checkNetwork(path, color, dir);
+	}
 
-			for (int i = 0; i < 8; i++) {
-				int x = ((Piece)chain.back().item()).x();
-				int y = ((Piece)chain.back().item()).y();
-				switch (i) {
-					//NW
-					case 0: //System.out.println("Checking NW of " + x + "," + y);
-							if (dir == 0 || dir == 7) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit NW");
-								x--;
-								y--;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
-
-							if (getContents(x, y).color() == color) {
-								//System.out.println("Encountered piece of the same color");
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 0)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//W
-					case 1: //System.out.println("Checking W of " + x + "," + y);
-							if (dir == 1 || dir == 6) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit W");
-								x--;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
-
-							if (getContents(x, y).color() == color) {
-								//System.out.println("Encountered piece of the same color");
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 1)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//SW
-					case 2: //System.out.println("Checking SW of " + x + "," + y);
-							if (dir == 2 || dir == 5) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit SW");
-								x--;
-								y++;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
-
-							if (getContents(x, y).color() == color) {
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 2)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//N
-					case 3: //System.out.println("Checking N of " + x + "," + y);
-							if (dir == 3 || dir == 4) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit N");
-								y--;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
-
-							if (getContents(x, y).color() == color) {
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 3)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//S
-					case 4: //System.out.println("Checking S of " + x + "," + y);
-							if (dir == 4 || dir == 3) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit S");
-								y++;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
-
-							if (getContents(x, y).color() == color) {
-								//System.out.println("Encountered piece of the same color");
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 4)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//NE
-					case 5: //System.out.println("Checking NE of " + x + "," + y);
-							if (dir == 5 || dir == 2) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit NE");
-								x++;
-								y--;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
+	/**
+	 * Operates recursively to check whether a player has a network, as
+	 * checkNetwork(DList, char, int) does.  The chain is a persistent list with
+	 * the last piece at its head, so each step of the search extends it with
+	 * cons() and backtracking needs no undo.
+	 * 
+	 * @param chain the pieces of the potential network, the last one first
+	 * @param color the color of the player
+	 * @param dir the direction that the last connection came in
+	 * @return true or false depending on whether a network was found 
+	 */
+	public boolean checkNetwork(PList chain, char color, int dir) {
+		if (chain.isEmpty()) {
+			return false;
+		}
+		return extendNetwork(chain, (Piece) chain.last(), color, dir);
+	}
 
-							if (getContents(x, y).color() == color) {
-								//System.out.println("Encountered piece of the same color");
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 5)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//E
-					case 6: //System.out.println("Checking E of " + x + "," + y);
-							if (dir == 6 || dir == 1) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit E");
-								x++;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
+	/**
+	 * Does the work of checkNetwork for a non-empty chain.
+	 * 
+	 * @param chain the pieces of the potential network, the last one first
+	 * @param first the first piece of the chain
+	 * @param color the color of the player
+	 * @param dir the direction that the last connection came in
+	 * @return true or false depending on whether a network was found 
+	 */
+	private boolean extendNetwork(PList chain, Piece first, char color, int dir) {
+		Piece last = (Piece) chain.head();
+		if (color == 'B' && last.y() == dim - 1 && first.y() == 0) {
+			return chain.length() >= NETWORK_LENGTH;
+		} else if (color == 'W' && last.x() == dim - 1 && first.x() == 0) {
+			return chain.length() >= NETWORK_LENGTH;
+		}
 
-							if (getContents(x, y).color() == color) {
-								//System.out.println("Encountered piece of the same color");
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 6)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-					//SE
-					case 7: //System.out.println("Checking SE of " + x + "," + y);
-							if (dir == 7 || dir == 0) {
-								//System.out.println("Direction restricted");
-								continue;
-							}
-							do {
-								//System.out.print("Moving one unit SE");
-								x++;
-								y++;
-								//System.out.println(" to " + x + "," + y);
-							} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-							if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-								//System.out.println("Went out of bounds");
-								continue;
-							}
+		for (int i = 0; i < 8; i++) {
+			if (dir == i || dir == 7 - i) {
+				//Direction restricted
+				continue;
+			}
+			int x = last.x();
+			int y = last.y();
+			do {
+				x += DX[i];
+				y += DY[i];
+			} while (x > 0 && y > 0 && x < dim && y < dim && getContents(x, y) == null);
+
+			if (x <= 0 || y <= 0 || x >= dim || y >= dim) {
+				//Went out of bounds
+				continue;
+			}
 
-							if (getContents(x, y).color() == color) {
-								//System.out.println("Encountered piece of the same color");
-								if (inList(getContents(x, y), chain)) {
-									continue;
-								}
-								chain.insertBack(getContents(x, y));
-								if (checkNetwork(chain, color, 7)) {
-									return true;
-								} else {
-									chain.back().remove();
-									continue;
-								}
-							} else {
-								continue;
-							}
-				}
-				return false;
+			Piece next = getContents(x, y);
+			if (next.color() != color || chain.contains(next)) {
+				continue;
+			}
+			if (extendNetwork(chain.cons(next), first, color, i)) {
+				return true;
 			}
-		} catch (InvalidNodeException e) {
-			return false;
 		}
 		return false;
 	}
@@ -429,163 +653,52 @@ public class Board {
 	 * @return an int representing the total number of connections
 	 */
 	public int connects(DList visited, char color) {
+		if ((++sampleTick & NetworkCheckEvent.SAMPLE_MASK) != 0) {
+			return countConnects(visited, color);
+		}
+		NetworkCheckEvent event = new NetworkCheckEvent();
+		event.begin();
+		int connects = countConnects(visited, color);
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = "connects";
+			event.color = color;
+			event.result = connects;
+			event.commit();
+		}
+		return connects;
+	}
+
+	/**
+	 * Does the work of connects.
+	 * 
+	 * @param visited a DList of pieces that have already been started from 
+	 * @param color the color of the piece whose connections are being counted
+	 * @return an int representing the total number of connections
+	 */
+	private int countConnects(DList visited, char color) {
 		int connects = 0;
-		for (int i = 0; i < DIM; i++) {
-			for (int j = 0; j < DIM; j++) {
+		for (int i = 0; i < dim; i++) {
+			for (int j = 0; j < dim; j++) {
 				if (getContents(i, j) != null && getContents(i, j).color() == color) {
 					visited.insertBack(getContents(i, j));
 					for (int k = 0; k < 8; k++) {
 						int x = i;
 						int y = j;
-						switch (k) {
-							case 0: 
-									do {
-										//System.out.print("Moving one unit NW");
-										x--;
-										y--;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 1: 
-									do {
-										//System.out.print("Moving one unit NW");
-										x--;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 2: 
-									do {
-										//System.out.print("Moving one unit NW");
-										x--;
-										y++;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 3: 
-									do {
-										//System.out.print("Moving one unit NW");
-										y--;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 4: 
-									do {
-										//System.out.print("Moving one unit NW");
-										y++;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 5: 
-									do {
-										//System.out.print("Moving one unit NW");
-										x++;
-										y--;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 6: 
-									do {
-										//System.out.print("Moving one unit NW");
-										x++;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
-							case 7: 
-									do {
-										//System.out.print("Moving one unit NW");
-										x++;
-										y++;
-										//System.out.println(" to " + x + "," + y);
-									} while (x > 0 && y > 0 && x < Board.DIM && y < Board.DIM && getContents(x, y) == null);
-
-									if (x <= 0 || y <= 0 || x >= Board.DIM || y >= Board.DIM) {
-										//System.out.println("Went out of bounds");
-										continue;
-									}
-
-									if (getContents(x, y).color() == color) {
-										if (!inList(getContents(x, y), visited)) {
-											connects++;
-										}
-									}
-									break;
+						do {
+							x += DX[k];
+							y += DY[k];
+						} while (x > 0 && y > 0 && x < dim && y < dim && getContents(x, y) == null);
+
+						if (x <= 0 || y <= 0 || x >= dim || y >= dim) {
+							//Went out of bounds
+							continue;
+						}
+
+						if (getContents(x, y).color() == color) {
+							if (!inList(getContents(x, y), visited)) {
+								connects++;
+							}
 						}
 					}
 				}
@@ -616,8 +729,8 @@ public class Board {
 	 * 
 	 */
 	public void printBoard() {
-		for (int i = 0; i < DIM; i++) {
-			for (int j = 0; j < DIM; j++) {
+		for (int i = 0; i < dim; i++) {
+			for (int j = 0; j < dim; j++) {
 				if (board[j][i] == null) {
 					System.out.print("  ");
 				} else {
@@ -699,7 +812,7 @@ class Piece {
 					continue;
 				}
 				index++;
-				if (i < 0 || j < 0 || i >= Board.DIM || j >= Board.DIM) {
+				if (i < 0 || j < 0 || i >= board.dim() || j >= board.dim()) {
 					continue;
 				}
 				neighbors[index] = board.getContents(i, j);
@@ -0,0 +1,39 @@
+/* ChooseMoveEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  A Flight Recorder event committed once per MachinePlayer.chooseMove.  Its
+ *  duration is the time taken to pick the move.
+ */
+@Name("player.ChooseMove")
+@Label("Choose Move")
+@Category({"Network", "Search"})
+@Description("A MachinePlayer picking its next move")
+@StackTrace(false)
+class ChooseMoveEvent extends Event {
+
+  @Label("Color")
+  char color;
+
+  @Label("Depth")
+  @Description("Search depth reached, or 0 for a book move")
+  int depth;
+
+  @Label("Nodes")
+  long nodes;
+
+  @Label("Move")
+  String move;
+
+  @Label("Book Move")
+  boolean book;
+
+}
@@ -0,0 +1,315 @@
+/* Engine.java */
+
+package player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ *  A line-based engine protocol on standard input and output, in the
+ *  spirit of UCI, so that a MachinePlayer can run in its own process.
+ *
+ *  Usage:  java player.Engine
+ *
+ *  Moves are written as in Moves.format: "x,y" adds a chip, "x2,y2-x1,y1"
+ *  steps a chip from (x2, y2) to (x1, y1).  Commands:
+ *
+ *    network                  replies "id name ..." and "networkok"
+ *    isready                  replies "readyok" once earlier commands are done
+ *    newgame [dim n]          clears the position; "dim" selects an n x n
+ *                             variant board (default 8)
+ *    position startpos [moves m1 m2 ...]
+ *                             sets the position; white plays m1
+ *    go [depth n] [movetime ms] [nodes n] [infinite] [ponder]
+ *                             searches the side to move.  Prints one
+ *                             "info depth d score s nodes n time ms nps n pv ..."
+ *                             line per completed depth and finally
+ *                             "bestmove m [ponder m]".  Without limits the
+ *                             search runs to depth 3; "infinite" and
+ *                             "ponder" searches run until stop (or, for
+ *                             ponder, until ponderhit starts the clock),
+ *                             and hold their bestmove until then even if
+ *                             the search ends sooner.
+ *    stop                     ends the current search
+ *    ponderhit                the expected move was played; the ponder
+ *                             search continues as a normal search
+ *    bench [depth n]          runs Bench (default depth 4) and prints its
+ *                             report, ending with "signature n"
+ *    quit                     exits
+ *
+ *  Unknown commands and illegal moves are reported with "info string".
+ */
+public class Engine {
+
+  final static int DEFAULT_DEPTH = 3;
+  final static int MAX_DEPTH = 64;
+
+  private final PrintStream out;
+  private final ArrayList<Move> moves = new ArrayList<Move>();
+  private int dim = Board.DIM;
+
+  private Thread searchThread;
+  private MachinePlayer searcher;
+  private long ponderMoveTime;
+
+  //  Opened by stop, or by ponderhit unless the search is infinite; an
+  //  infinite or ponder search waits for it before printing bestmove.
+  private CountDownLatch release;
+  private boolean infiniteSearch;
+
+  /**
+   *  @param out the stream replies are written to.
+   */
+  public Engine(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   *  run() reads and executes commands until "quit" or end of input.
+   *
+   *  @param in the command stream.
+   *  @exception IOException if reading fails.
+   */
+  public void run(BufferedReader in) throws IOException {
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (!execute(line.trim())) {
+        break;
+      }
+    }
+    stopSearch();
+  }
+
+  /**
+   *  execute() runs one command.
+   *
+   *  @param line the command line.
+   *  @return false if the engine should exit.
+   */
+  public boolean execute(String line) {
+    String[] words = line.split("\\s+");
+    String command = words[0];
+    if (command.length() == 0) {
+      return true;
+    } else if (command.equals("network")) {
+      send("id name Network MachinePlayer");
+      send("networkok");
+    } else if (command.equals("isready")) {
+      send("readyok");
+    } else if (command.equals("newgame")) {
+      stopSearch();
+      newgame(words);
+    } else if (command.equals("position")) {
+      stopSearch();
+      position(words);
+    } else if (command.equals("go")) {
+      stopSearch();
+      go(words);
+    } else if (command.equals("stop")) {
+      stopSearch();
+    } else if (command.equals("ponderhit")) {
+      ponderhit();
+    } else if (command.equals("bench")) {
+      stopSearch();
+      bench(words);
+    } else if (command.equals("quit")) {
+      return false;
+    } else {
+      send("info string unknown command " + command);
+    }
+    return true;
+  }
+
+  private void newgame(String[] words) {
+    moves.clear();
+    dim = Board.DIM;
+    if (words.length >= 3 && words[1].equals("dim")) {
+      try {
+        int d = Integer.parseInt(words[2]);
+        if (d >= Board.MIN_DIM && d <= Board.MAX_DIM) {
+          dim = d;
+          return;
+        }
+      } catch (NumberFormatException e) {
+        // Reported below.
+      }
+      send("info string bad board size " + words[2]);
+    }
+  }
+
+  private void bench(String[] words) {
+    int depth = Bench.DEFAULT_DEPTH;
+    if (words.length >= 3 && words[1].equals("depth")) {
+      try {
+        depth = Integer.parseInt(words[2]);
+      } catch (NumberFormatException e) {
+        send("info string bad depth " + words[2]);
+        return;
+      }
+    }
+    synchronized (this) {
+      Bench.run(depth, out);
+      out.flush();
+    }
+  }
+
+  private void position(String[] words) {
+    moves.clear();
+    int i = 1;
+    if (i < words.length && words[i].equals("startpos")) {
+      i++;
+    }
+    if (i < words.length && words[i].equals("moves")) {
+      for (i++; i < words.length; i++) {
+        Move m = Moves.parse(words[i]);
+        if (m == null) {
+          send("info string bad move " + words[i]);
+          return;
+        }
+        moves.add(m);
+      }
+    }
+  }
+
+  //  Builds a player for the side to move by replaying the position.  The
+  //  position is cut short at an illegal move, so that the side to move is
+  //  the one after the last legal move.
+  private MachinePlayer replay() {
+    int color = moves.size() % 2 == 0 ? 1 : 0;
+    MachinePlayer player = new MachinePlayer(color, DEFAULT_DEPTH, dim);
+    player.setOpeningBook(null);
+    for (int i = 0; i < moves.size(); i++) {
+      boolean mine = (i % 2 == 0) == (color == 1);
+      boolean legal = mine ? player.forceMove(moves.get(i)) : player.opponentMove(moves.get(i));
+      if (!legal) {
+        send("info string illegal move " + Moves.format(moves.get(i)) + ", ignoring the rest");
+        moves.subList(i, moves.size()).clear();
+        player.close();
+        return replay();
+      }
+    }
+    return player;
+  }
+
+  private void go(String[] words) {
+    int depth = 0;
+    long moveTime = 0;
+    long nodes = 0;
+    boolean infinite = false;
+    boolean ponder = false;
+    try {
+      for (int i = 1; i < words.length; i++) {
+        if (words[i].equals("depth")) {
+          depth = Integer.parseInt(words[++i]);
+        } else if (words[i].equals("movetime")) {
+          moveTime = Long.parseLong(words[++i]);
+        } else if (words[i].equals("nodes")) {
+          nodes = Long.parseLong(words[++i]);
+        } else if (words[i].equals("infinite")) {
+          infinite = true;
+        } else if (words[i].equals("ponder")) {
+          ponder = true;
+        }
+      }
+    } catch (RuntimeException e) {
+      send("info string bad go command");
+      return;
+    }
+    if (depth == 0) {
+      depth = (infinite || ponder || moveTime > 0 || nodes > 0) ? MAX_DEPTH : DEFAULT_DEPTH;
+    }
+    final int maxDepth = Math.min(depth, MAX_DEPTH);
+    final long maxNodes = nodes;
+    final long deadline = (moveTime > 0 && !ponder) ? System.nanoTime() + moveTime * 1000000 : 0;
+    ponderMoveTime = ponder ? moveTime : 0;
+    final CountDownLatch hold = new CountDownLatch(infinite || ponder ? 1 : 0);
+    release = hold;
+    infiniteSearch = infinite;
+
+    final MachinePlayer player = replay();
+    searcher = player;
+    searchThread = new Thread(new Runnable() {
+      public void run() {
+        search(player, maxDepth, deadline, maxNodes, hold);
+      }
+    }, "network-engine-search");
+    searchThread.start();
+  }
+
+  private void search(MachinePlayer player, int maxDepth, long deadline, long maxNodes,
+                      CountDownLatch hold) {
+    Best best = player.searchIterative(maxDepth, deadline, maxNodes, new SearchListener() {
+      public void depthDone(int depth, int score, long nodes, long millis, Move[] pv) {
+        StringBuilder b = new StringBuilder("info depth ").append(depth);
+        b.append(" score ").append(score);
+        b.append(" nodes ").append(nodes);
+        b.append(" time ").append(millis);
+        b.append(" nps ").append(millis > 0 ? nodes * 1000 / millis : nodes * 1000);
+        b.append(" pv");
+        for (int i = 0; i < pv.length; i++) {
+          b.append(' ').append(Moves.format(pv[i]));
+        }
+        send(b.toString());
+      }
+    });
+    try {
+      hold.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (best == null || best.m == null) {
+      send("bestmove quit");
+      return;
+    }
+    Move[] pv = player.iterativePrincipalVariation();
+    if (pv.length > 1) {
+      send("bestmove " + Moves.format(best.m) + " ponder " + Moves.format(pv[1]));
+    } else {
+      send("bestmove " + Moves.format(best.m));
+    }
+  }
+
+  private void ponderhit() {
+    MachinePlayer player = searcher;
+    if (player != null && ponderMoveTime > 0) {
+      player.setDeadline(System.nanoTime() + ponderMoveTime * 1000000);
+    }
+    if (release != null && !infiniteSearch) {
+      release.countDown();
+    }
+  }
+
+  //  Stops the running search, if any, waits for its bestmove and closes
+  //  its player.
+  private void stopSearch() {
+    if (searchThread == null) {
+      return;
+    }
+    searcher.requestStop();
+    release.countDown();
+    try {
+      searchThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    searcher.close();
+    searchThread = null;
+    searcher = null;
+    release = null;
+  }
+
+  private synchronized void send(String line) {
+    out.println(line);
+    out.flush();
+  }
+
+  public static void main(String[] args) throws IOException {
+    new Engine(System.out).run(new BufferedReader(new InputStreamReader(System.in)));
+  }
+
+}
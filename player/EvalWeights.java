@@ -0,0 +1,197 @@
+/* EvalWeights.java */
+
+package player;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ *  The weights of the hand-written evaluation.  Each side of a position is
+ *  scored from the number of connections c between its chips (as counted
+ *  by Board.connects), its chips in its two goal areas and its network
+ *  distance (the chips it still needs to join its goals; see
+ *  NetworkDistance):
+ *
+ *    side = connects * c + connects2 * c^2 + connects3 * c^3
+ *           + goal * (goal chips) + bothGoals * (1 if both goals are held)
+ *           + distance * (network distance)
+ *
+ *  and a position scores side(player) - side(opponent).  The default
+ *  weights, connects3 = 1 and all others 0, give the original c^3 - c^3
+ *  evaluation exactly.
+ *
+ *  Weights are stored as a properties file, one "name=value" line per
+ *  weight; missing weights are 0.  Tuner writes such files.
+ */
+public final class EvalWeights {
+
+  public final static String[] NAMES = {"connects", "connects2", "connects3", "goal", "bothGoals",
+                                        "distance"};
+  final static int CONNECTS = 0;
+  final static int CONNECTS2 = 1;
+  final static int CONNECTS3 = 2;
+  final static int GOAL = 3;
+  final static int BOTH_GOALS = 4;
+  final static int DISTANCE = 5;
+
+  public final static EvalWeights DEFAULT = new EvalWeights(new int[] {0, 0, 1, 0, 0, 0});
+
+  private static EvalWeights shared;
+
+  private final int[] w;
+
+  /**
+   *  @param weights the weights, in the order of NAMES.
+   */
+  public EvalWeights(int[] weights) {
+    if (weights.length != NAMES.length) {
+      throw new IllegalArgumentException("expected " + NAMES.length + " weights");
+    }
+    w = weights.clone();
+  }
+
+  /**
+   *  shared() returns the weights in the file named by the
+   *  "network.eval.tuned" system property, loading them on first use, or
+   *  DEFAULT if no file is configured or it cannot be read.
+   *
+   *  @return the shared weights.
+   */
+  public static synchronized EvalWeights shared() {
+    if (shared == null) {
+      shared = DEFAULT;
+      String path = System.getProperty("network.eval.tuned");
+      if (path != null) {
+        try {
+          shared = load(new File(path));
+        } catch (IOException e) {
+          System.err.println("Evaluation weights not loaded: " + e.getMessage());
+        } catch (NumberFormatException e) {
+          System.err.println("Evaluation weights not loaded: " + e.getMessage());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   *  load() reads weights from a properties file.
+   *
+   *  @param file the file to read.
+   *  @return the weights.
+   *  @exception IOException if the file cannot be read.
+   */
+  public static EvalWeights load(File file) throws IOException {
+    Properties p = new Properties();
+    InputStream in = new FileInputStream(file);
+    try {
+      p.load(in);
+    } finally {
+      in.close();
+    }
+    int[] weights = new int[NAMES.length];
+    for (int i = 0; i < NAMES.length; i++) {
+      weights[i] = Integer.parseInt(p.getProperty(NAMES[i], "0").trim());
+    }
+    return new EvalWeights(weights);
+  }
+
+  /**
+   *  save() writes the weights to a properties file.
+   *
+   *  @param file the file to write.
+   *  @param comment a comment for the head of the file, or null.
+   *  @exception IOException if the file cannot be written.
+   */
+  public void save(File file, String comment) throws IOException {
+    Properties p = new Properties();
+    for (int i = 0; i < NAMES.length; i++) {
+      p.setProperty(NAMES[i], String.valueOf(w[i]));
+    }
+    OutputStream out = new FileOutputStream(file);
+    try {
+      p.store(out, comment);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   *  get() returns one weight.
+   *
+   *  @param i the index of the weight in NAMES.
+   *  @return the weight.
+   */
+  public int get(int i) {
+    return w[i];
+  }
+
+  /**
+   *  usesGoals() returns true if the goal terms have nonzero weights, so
+   *  that callers can skip counting goal chips otherwise.
+   *
+   *  @return true if side() depends on its goal arguments.
+   */
+  public boolean usesGoals() {
+    return w[GOAL] != 0 || w[BOTH_GOALS] != 0;
+  }
+
+  /**
+   *  usesDistance() returns true if the network distance has a nonzero
+   *  weight, so that callers can skip computing it otherwise.
+   *
+   *  @return true if side() depends on its distance argument.
+   */
+  public boolean usesDistance() {
+    return w[DISTANCE] != 0;
+  }
+
+  /**
+   *  side() scores one side of a position.
+   *
+   *  @param connects the side's connections.
+   *  @param near the side's chips in its first goal area.
+   *  @param far the side's chips in its second goal area.
+   *  @param distance the side's network distance.
+   *  @return the side's score.
+   */
+  public int side(int connects, int near, int far, int distance) {
+    int c = connects;
+    int score = w[CONNECTS] * c + w[CONNECTS2] * c * c + w[CONNECTS3] * c * c * c
+                + w[DISTANCE] * distance;
+    if (near + far > 0) {
+      score += w[GOAL] * (near + far);
+      if (near > 0 && far > 0) {
+        score += w[BOTH_GOALS];
+      }
+    }
+    return score;
+  }
+
+  /**
+   *  fingerprint() returns a hash of the weights, equal for equal weights.
+   *
+   *  @return the fingerprint.
+   */
+  public long fingerprint() {
+    long h = NAMES.length;
+    for (int i = 0; i < w.length; i++) {
+      h = (h + w[i]) * 0x9E3779B97F4A7C15L;
+    }
+    return h ^ (h >>> 29);
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < NAMES.length; i++) {
+      sb.append(i == 0 ? "" : " ").append(NAMES[i]).append('=').append(w[i]);
+    }
+    return sb.toString();
+  }
+
+}
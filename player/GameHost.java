@@ -0,0 +1,176 @@
+/* GameHost.java */
+
+package player;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Hosts many concurrent games, each a GameSession with its own
+ *  MachinePlayer.
+ *
+ *  Sessions do not own threads.  Move handling runs as short tasks on a
+ *  dispatcher: virtual threads when the JDK has them (21 and later), and a
+ *  small daemon pool otherwise.  Searches, which are CPU-bound, run on a
+ *  fixed pool of search threads.  Each session has at most one search queued
+ *  at a time and the queue is FIFO, so busy sessions take turns fairly.
+ *
+ *  The number of open sessions is capped by a memory budget divided by
+ *  SESSION_BYTES, the heap budgeted per session.
+ */
+public class GameHost {
+
+  /**
+   *  The heap budgeted per session.  Measured on JDK 17 as the heap retained
+   *  by 1000 sessions after a full GC: about 6 KB each when just opened, and
+   *  9.5 KB after ten opponent moves.  The rest is headroom for the board
+   *  filling up later in the game.
+   */
+  public final static int SESSION_BYTES = 16 * 1024;
+
+  private final ExecutorService dispatcher;
+  private final ThreadPoolExecutor searchers;
+  private final int maxSessions;
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger ids = new AtomicInteger();
+  private final Set<GameSession> sessions = ConcurrentHashMap.<GameSession>newKeySet();
+  private volatile boolean shutdown;
+
+  /**
+   *  Creates a host with one search thread per processor and half of the
+   *  maximum heap as its session budget.
+   */
+  public GameHost() {
+    this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 2);
+  }
+
+  /**
+   *  @param searchThreads the number of searches that may run at once.
+   *  @param memoryBudget the heap, in bytes, that sessions may use.
+   */
+  public GameHost(int searchThreads, long memoryBudget) {
+    maxSessions = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / SESSION_BYTES));
+    searchers = new ThreadPoolExecutor(searchThreads, searchThreads, 0, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), daemonThreads("network-search-"));
+    dispatcher = newDispatcher();
+  }
+
+  //  Returns a virtual-thread-per-task executor if this JDK provides one,
+  //  otherwise a small pool of platform threads.  Dispatch tasks never
+  //  block, so the small pool is enough.
+  private static ExecutorService newDispatcher() {
+    try {
+      Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) m.invoke(null);
+    } catch (Exception e) {
+      int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 4);
+      return Executors.newFixedThreadPool(threads, daemonThreads("network-dispatch-"));
+    }
+  }
+
+  private static ThreadFactory daemonThreads(final String prefix) {
+    final AtomicInteger count = new AtomicInteger();
+    return new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, prefix + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+
+  /**
+   *  open() starts a new game.  If the machine plays white, its first move
+   *  is searched immediately.
+   *
+   *  @param machineColor the machine's color: 0 for black, 1 for white.
+   *  @param searchDepth the machine's search depth.
+   *  @param listener receives the machine's moves and the result.
+   *  @return the new session.
+   *  @exception IllegalStateException if the host is at its session limit
+   *             or has been shut down.
+   */
+  public GameSession open(int machineColor, int searchDepth, SessionListener listener) {
+    if (shutdown) {
+      throw new IllegalStateException("host is shut down");
+    }
+    if (active.incrementAndGet() > maxSessions) {
+      active.decrementAndGet();
+      throw new IllegalStateException("session limit of " + maxSessions + " reached");
+    }
+    GameSession session;
+    try {
+      session = new GameSession(this, ids.incrementAndGet(), machineColor, searchDepth, listener);
+    } catch (RuntimeException e) {
+      active.decrementAndGet();
+      throw e;
+    }
+    sessions.add(session);
+    return session;
+  }
+
+  /**
+   *  activeSessions() returns the number of open sessions.
+   *
+   *  @return the open session count.
+   */
+  public int activeSessions() {
+    return active.get();
+  }
+
+  /**
+   *  maxSessions() returns the session limit set by the memory budget.
+   *
+   *  @return the maximum number of open sessions.
+   */
+  public int maxSessions() {
+    return maxSessions;
+  }
+
+  /**
+   *  queuedSearches() returns the number of sessions waiting for a search
+   *  thread.
+   *
+   *  @return the length of the search queue.
+   */
+  public int queuedSearches() {
+    return searchers.getQueue().size();
+  }
+
+  /**
+   *  shutdown() stops accepting work and closes every open session.
+   *  Running searches finish unreported; queued ones end without searching.
+   *  Each session gives back its slot as its last task ends, so
+   *  activeSessions() falls to 0 once the running searches are done.
+   */
+  public void shutdown() {
+    shutdown = true;
+    for (GameSession session : sessions) {
+      session.close();
+    }
+    dispatcher.shutdown();
+    searchers.shutdown();
+  }
+
+  void dispatch(Runnable task) {
+    dispatcher.execute(task);
+  }
+
+  void search(Runnable task) {
+    searchers.execute(task);
+  }
+
+  void release(GameSession session) {
+    sessions.remove(session);
+    active.decrementAndGet();
+  }
+
+}
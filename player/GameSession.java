@@ -0,0 +1,191 @@
+/* GameSession.java */
+
+package player;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *  One game between a MachinePlayer hosted by a GameHost and a remote
+ *  opponent.  Opponent moves are queued with opponentMove() and processed in
+ *  order; the machine's replies are delivered to the SessionListener.
+ *
+ *  A session holds no thread while it waits for the opponent.  When moves
+ *  arrive, a short dispatch task validates them on the host's dispatcher and
+ *  hands the search to the host's bounded search pool.  At most one task of
+ *  a session runs at a time, which is what keeps the player's unsynchronized
+ *  board safe.
+ */
+public class GameSession {
+
+  // Queued in place of an opponent move when the machine is to move first.
+  private final static Move MACHINE_TO_MOVE = new Move();
+
+  private final GameHost host;
+  private final int id;
+  private final MachinePlayer player;
+  private final char machineColor;
+  private final char opponentColor;
+  private final SessionListener listener;
+
+  private final ConcurrentLinkedQueue<Move> inbox = new ConcurrentLinkedQueue<Move>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicBoolean released = new AtomicBoolean();
+  private volatile boolean closed;
+
+  private final Runnable drain = new Runnable() {
+    public void run() {
+      drain();
+    }
+  };
+
+  private final Runnable search = new Runnable() {
+    public void run() {
+      search();
+    }
+  };
+
+  GameSession(GameHost host, int id, int color, int searchDepth,
+              SessionListener listener) {
+    this.host = host;
+    this.id = id;
+    this.player = new MachinePlayer(color, searchDepth);
+    this.machineColor = player.color();
+    this.opponentColor = color == 0 ? 'W' : 'B';
+    this.listener = listener;
+    if (this.machineColor == 'W') {
+      inbox.add(MACHINE_TO_MOVE);
+      schedule();
+    }
+  }
+
+  /**
+   *  id() returns the number the host gave this session.
+   *
+   *  @return the session id.
+   */
+  public int id() {
+    return id;
+  }
+
+  /**
+   *  isClosed() returns true once the game is over or close() was called.
+   *
+   *  @return true if the session accepts no more moves.
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   *  opponentMove() queues a move by the opponent.  The machine answers it
+   *  through SessionListener.moveChosen, or reports it through moveRejected
+   *  if it is illegal.  A QUIT move resigns the game.
+   *
+   *  @param m the opponent's move.
+   */
+  public void opponentMove(Move m) {
+    if (!closed) {
+      inbox.add(m);
+      schedule();
+    }
+  }
+
+  /**
+   *  close() abandons the game and frees its slot in the host.  Moves still
+   *  queued are dropped; a search already running finishes unreported, and
+   *  the player and slot are released once it has.
+   */
+  public void close() {
+    closed = true;
+    if (!scheduled.get()) {
+      release();
+    }
+  }
+
+  //  Closes the player and frees the slot, once.  Called by close() when no
+  //  task is running, or by the task that finishes after close().
+  private void release() {
+    if (released.compareAndSet(false, true)) {
+      player.close();
+      host.release(this);
+    }
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      host.dispatch(drain);
+    }
+  }
+
+  //  Processes the next queued move.  Either hands a search to the search
+  //  pool (which calls finish() when done) or finishes directly, also when
+  //  the listener throws.
+  private void drain() {
+    boolean searching = false;
+    try {
+      Move m = inbox.poll();
+      if (m == null || closed) {
+        return;
+      }
+      if (m != MACHINE_TO_MOVE) {
+        if (m.moveKind == Move.QUIT) {
+          gameOver(machineColor);
+          return;
+        }
+        if (!player.opponentMove(m)) {
+          listener.moveRejected(this, m);
+          return;
+        }
+        if (player.hasNetwork(opponentColor)) {
+          gameOver(opponentColor);
+          return;
+        }
+      }
+      host.search(search);
+      searching = true;
+    } finally {
+      if (!searching) {
+        finish();
+      }
+    }
+  }
+
+  private void search() {
+    try {
+      if (closed) {
+        return;
+      }
+      Move m = player.chooseMove();
+      if (closed) {
+        return;
+      }
+      listener.moveChosen(this, m);
+      if (player.hasNetwork(machineColor)) {
+        gameOver(machineColor);
+      }
+    } catch (RuntimeException e) {
+      e.printStackTrace();
+      close();
+    } finally {
+      finish();
+    }
+  }
+
+  //  Ends the running task.  Releases the session if it was closed
+  //  meanwhile, otherwise schedules the next queued move.
+  private void finish() {
+    scheduled.set(false);
+    if (closed) {
+      release();
+    } else if (!inbox.isEmpty()) {
+      schedule();
+    }
+  }
+
+  private void gameOver(char winner) {
+    close();
+    listener.gameOver(this, winner);
+  }
+
+}
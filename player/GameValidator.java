@@ -0,0 +1,323 @@
+/* GameValidator.java */
+
+package player;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  Checks game logs in bulk: replays each game on a Board, stops at the
+ *  first illegal move and reports the result.
+ *
+ *  Usage:  java player.GameValidator games.txt|- [threads [errors]]
+ *
+ *  The log has one game per line, as the moves in order (white first),
+ *  written as in Moves.format and separated by spaces.  Blank lines and
+ *  lines starting with "#" are skipped.  A game is legal when each move is:
+ *  an add while the mover has chips left (Board.isLegal decides where), or
+ *  once they are all placed, a step of one of the mover's chips to a square
+ *  where it could be added; a quit ends the game as a loss for the mover.
+ *  A game ends when a move completes a network; a move that completes
+ *  networks for both players loses.  Moves after the end are illegal.
+ *
+ *  One line is printed per game, in input order, or with "errors" only for
+ *  games with an illegal move; then totals and the rate.
+ *
+ *  A reader thread parses nothing: it hands blocks of BLOCK lines through a
+ *  bounded queue to "threads" workers (default: one per processor), and a
+ *  writer prints their reports in order.  At most 2 * threads + 2 blocks
+ *  are in flight at once, so memory use does not grow with the log.
+ */
+public class GameValidator {
+
+  final static int BLOCK = 1024;
+
+  //  Results of a game.
+  final static int UNFINISHED = 0;
+  final static int WHITE_WON = 1;
+  final static int BLACK_WON = 2;
+  final static int ILLEGAL = 3;
+
+  /**
+   *  The outcome of one game.
+   */
+  static class Report {
+
+    int result;
+    int moves;        // moves played, or the index of the illegal one
+    String move;      // the illegal move, as written
+    String reason;
+
+  }
+
+  /**
+   *  validate() replays one game.
+   *
+   *  @param line the moves of the game, separated by spaces.
+   *  @return the report.
+   */
+  static Report validate(String line) {
+    Report report = new Report();
+    Board board = new Board();
+    int chips = MachinePlayer.chipsFor(board.dim());
+    int[] placed = new int[2];      // by black (0) and white (1)
+    boolean over = false;
+    String[] words = line.trim().split("\\s+");
+    for (int i = 0; i < words.length; i++) {
+      char color = i % 2 == 0 ? 'W' : 'B';
+      report.moves = i;
+      String reason;
+      Move m = Moves.parse(words[i]);
+      if (over) {
+        reason = "the game is over";
+      } else if (m == null) {
+        reason = "cannot parse the move";
+      } else {
+        reason = check(board, m, color, placed[color == 'W' ? 1 : 0] < chips);
+      }
+      if (reason != null) {
+        report.result = ILLEGAL;
+        report.move = words[i];
+        report.reason = reason;
+        return report;
+      }
+      if (m.moveKind == Move.QUIT) {
+        report.result = color == 'W' ? BLACK_WON : WHITE_WON;
+        over = true;
+        continue;
+      }
+      if (m.moveKind == Move.STEP) {
+        board.removePiece(m.x2, m.y2);
+      } else {
+        placed[color == 'W' ? 1 : 0]++;
+      }
+      board.addPiece(m.x1, m.y1, color);
+      char opp = color == 'W' ? 'B' : 'W';
+      if (board.hasNetwork(opp)) {
+        report.result = opp == 'W' ? WHITE_WON : BLACK_WON;
+        over = true;
+      } else if (board.hasNetwork(color)) {
+        report.result = color == 'W' ? WHITE_WON : BLACK_WON;
+        over = true;
+      }
+    }
+    report.moves = words.length;
+    return report;
+  }
+
+  //  Returns why move m by "color" is illegal on "board", or null if it is
+  //  legal.
+  private static String check(Board board, Move m, char color, boolean add) {
+    int dim = board.dim();
+    if (m.moveKind == Move.QUIT) {
+      return null;
+    }
+    if (add != (m.moveKind == Move.ADD)) {
+      return add ? "a step before all chips are placed" : "an add with no chips left";
+    }
+    if (m.x1 < 0 || m.y1 < 0 || m.x1 >= dim || m.y1 >= dim) {
+      return "off the board";
+    }
+    if (board.getContents(m.x1, m.y1) != null) {
+      return "the square is occupied";
+    }
+    if (m.moveKind == Move.ADD) {
+      return board.isLegal(m.x1, m.y1, color) ? null : "the square is not allowed";
+    }
+    if (m.x2 < 0 || m.y2 < 0 || m.x2 >= dim || m.y2 >= dim) {
+      return "the step starts off the board";
+    }
+    if (!Board.test(board.bits(color), m.x2 * dim + m.y2)) {
+      return "no own chip to step";
+    }
+    board.removePiece(m.x2, m.y2);
+    boolean legal = board.isLegal(m.x1, m.y1, color);
+    board.addPiece(m.x2, m.y2, color);
+    return legal ? null : "the square is not allowed";
+  }
+
+  /**
+   *  A block of log lines and, once validated, their reports.
+   */
+  static class Block {
+
+    final long first;       // the number of the first game, from 1
+    final String[] lines = new String[BLOCK];
+    int size;
+    Report[] reports;
+
+    Block(long first) {
+      this.first = first;
+    }
+
+  }
+
+  private final static Block END = new Block(-1);
+
+  private final int threads;
+  private final boolean errorsOnly;
+  private final PrintStream out;
+  private final long[] totals = new long[4];
+
+  //  Finished blocks waiting for the writer, by sequence number modulo
+  //  slots.length; "permits" keeps the reader from getting further ahead.
+  private final Block[] slots;
+  private final Semaphore permits;
+  private long nextToWrite;
+
+  /**
+   *  @param threads the number of worker threads.
+   *  @param errorsOnly true to report only games with an illegal move.
+   *  @param out the stream reports are printed to.
+   */
+  public GameValidator(int threads, boolean errorsOnly, PrintStream out) {
+    this.threads = threads;
+    this.errorsOnly = errorsOnly;
+    this.out = out;
+    slots = new Block[2 * threads + 2];
+    permits = new Semaphore(slots.length);
+  }
+
+  /**
+   *  run() validates every game of a log.
+   *
+   *  @param in the log.
+   *  @return the number of games.
+   *  @exception IOException if the log cannot be read.
+   *  @exception RuntimeException if a worker thread fails; the run stops
+   *             and the worker's exception is rethrown.
+   */
+  public long run(BufferedReader in) throws IOException {
+    final BlockingQueue<Block> queue = new ArrayBlockingQueue<Block>(threads);
+    final Thread reader = Thread.currentThread();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread("validator-" + t) {
+        public void run() {
+          try {
+            for (Block b = queue.take(); b != END; b = queue.take()) {
+              b.reports = new Report[b.size];
+              for (int i = 0; i < b.size; i++) {
+                b.reports[i] = validate(b.lines[i]);
+              }
+              finished(b);
+            }
+          } catch (InterruptedException e) {
+            // Abandoned by the reader.
+          } catch (Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+              reader.interrupt();
+            }
+          }
+        }
+      };
+      workers[t].start();
+    }
+
+    long games = 0;
+    boolean interrupted;
+    try {
+      Block block = null;
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.trim().length() == 0 || line.startsWith("#")) {
+          continue;
+        }
+        if (block == null) {
+          permits.acquire();
+          block = new Block(games + 1);
+        }
+        block.lines[block.size++] = line;
+        games++;
+        if (block.size == BLOCK) {
+          queue.put(block);
+          block = null;
+        }
+      }
+      if (block != null) {
+        queue.put(block);
+      }
+      for (int t = 0; t < threads; t++) {
+        queue.put(END);
+      }
+      for (int t = 0; t < threads; t++) {
+        workers[t].join();
+      }
+    } catch (InterruptedException e) {
+      if (failure.get() == null) {
+        throw new IOException("interrupted");
+      }
+    } finally {
+      interrupted = Tuner.stop(workers);
+    }
+    Tuner.rethrow(failure.get(), interrupted);
+    return games;
+  }
+
+  //  Takes a validated block and prints every block that is now next in
+  //  order.
+  private synchronized void finished(Block b) {
+    slots[(int) ((b.first - 1) / BLOCK % slots.length)] = b;
+    while (true) {
+      int slot = (int) (nextToWrite % slots.length);
+      Block next = slots[slot];
+      if (next == null || (next.first - 1) / BLOCK != nextToWrite) {
+        return;
+      }
+      slots[slot] = null;
+      for (int i = 0; i < next.size; i++) {
+        print(next.first + i, next.reports[i]);
+      }
+      nextToWrite++;
+      permits.release();
+    }
+  }
+
+  private void print(long game, Report r) {
+    totals[r.result]++;
+    if (r.result == ILLEGAL) {
+      out.println("game " + game + ": illegal move " + (r.moves + 1) + " (" + r.move + "): "
+                  + r.reason);
+    } else if (!errorsOnly) {
+      String result = r.result == WHITE_WON ? "White won" : r.result == BLACK_WON ? "Black won"
+                                                                                : "unfinished";
+      out.println("game " + game + ": " + result + " after " + r.moves + " moves");
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: java player.GameValidator games.txt|- [threads [errors]]");
+      System.exit(1);
+    }
+    int threads = args.length > 1 ? Integer.parseInt(args[1])
+                                  : Runtime.getRuntime().availableProcessors();
+    boolean errorsOnly = args.length > 2 && args[2].equals("errors");
+    BufferedReader in = new BufferedReader(args[0].equals("-")
+        ? new InputStreamReader(System.in) : new FileReader(args[0]), 1 << 16);
+    PrintStream out = new PrintStream(new java.io.BufferedOutputStream(System.out, 1 << 16), false);
+    GameValidator validator = new GameValidator(Math.max(1, threads), errorsOnly, out);
+    long start = System.nanoTime();
+    long games;
+    try {
+      games = validator.run(in);
+    } finally {
+      in.close();
+    }
+    long nanos = Math.max(1, System.nanoTime() - start);
+    long[] t = validator.totals;
+    out.println(games + " games: " + t[ILLEGAL] + " illegal, White won " + t[WHITE_WON]
+                + ", Black won " + t[BLACK_WON] + ", unfinished " + t[UNFINISHED] + "; "
+                + nanos / 1000000 + " ms, " + (long) (games * 3600e9 / nanos) + " games/hour");
+    out.flush();
+  }
+
+}
@@ -2,6 +2,8 @@
 
 package player;
 
+import java.util.Random;
+
 import list.*;
 
 /**
@@ -18,7 +20,100 @@ public class MachinePlayer extends Player {
   private char oppColor;
   private int searchDepth = 3;
   private Board board;
-  private int pieces = 10;
+  private int pieces = CHIPS;
+  private OpeningBook book = OpeningBook.shared();
+  private AnalysisCache cache = AnalysisCache.shared();
+  private Random random = new Random();
+  private long nodes;
+  private SearchStats stats;
+
+  //  Trace of every searched node (see SearchTrace), or null.  "cutoff" is
+  //  set by a node that stops at a beta cutoff, for calcMove to record.
+  private SearchTrace trace;
+  private boolean cutoff;
+  private boolean instrumented;
+
+  //  Triangular principal variation table: pv[d][d..pvLength[d]) is the best
+  //  line found from the node at depth d.  Allocated by the first search.
+  private Move[][] pv;
+  private int[] pvLength;
+
+  //  Limits for searchIterative.  "limited" is only set while one runs, so
+  //  other searches skip the checks entirely.
+  private boolean limited;
+  private boolean aborted;
+  private long nodeLimit;
+  private volatile long deadline;
+  private volatile boolean stopRequested;
+
+  //  The principal variation of the deepest depth searchIterative completed,
+  //  copied as that depth completed: an interrupted deeper depth overwrites
+  //  the pv table.
+  private Move[] iterativePv = new Move[0];
+
+  //  Batch evaluation of leaves (see BatchEval).  A node whose children are
+  //  all leaves scores them together and hands each child its score through
+  //  pendingEval.  -Dnetwork.eval.scalar=true falls back to one boardEval
+  //  call per leaf.
+  final static boolean BATCH_EVAL = !Boolean.getBoolean("network.eval.scalar");
+  private BatchEval batch;
+  private long[] batchMine = new long[0];
+  private long[] batchTheirs = new long[0];
+  private int[] batchMyCount;
+  private int[] batchOppCount;
+  private int[] batchScores;
+  private boolean pendingValid;
+  private int pendingEval;
+
+  //  Evaluation network (see NeuralEval), used instead of boardEval when one
+  //  is loaded for this board size.  The accumulator follows the board
+  //  through makeMove and unMove.
+  private NeuralEval network = NeuralEval.shared();
+  private NeuralEval.Accumulator accumulator;
+
+  //  Weights of the hand-written evaluation (see EvalWeights).
+  private EvalWeights weights = EvalWeights.shared();
+
+  //  Network distance term (see NetworkDistance), computed only when its
+  //  weight is nonzero.  A node whose children are leaves computes the
+  //  distance of the side not moving there once, keeping the squares of its
+  //  chain in reusePath; a child reached by an add outside those squares
+  //  has the same distance for that side.  reuseKey is the hash of the
+  //  node's position.
+  private NetworkDistance networkDistance;
+  private char reuseColor;
+  private int reuseDistance;
+  private long[] reusePath;
+  private long reuseKey;
+  private long[] distanceOwn = new long[1];
+  private long[] distanceOther = new long[1];
+  private int[] batchMyDistance;
+  private int[] batchOppDistance;
+
+  //  Hashes of the positions of the game followed by those of the current
+  //  search line, each with its side to move.  Positions before the last add
+  //  move have fewer chips and cannot recur, so historyStart[i] is the first
+  //  entry position i may repeat.  historyFilter counts the entries by their
+  //  low hash bits, which settles most lookups without a scan.
+  private long[] history = new long[64];
+  private int[] historyStart = new int[64];
+  private int historyLength;
+  private int[] historyFilter = new int[FILTER_SIZE];
+
+  //  How the search scores a position that repeats an earlier one with the
+  //  same side to move, set by -Dnetwork.repetition: "draw" (the default)
+  //  scores it 0, "avoid" scores it as nearly lost for the player who
+  //  repeated, and "off" ignores repetitions.
+  final static int REPETITION_OFF = 0;
+  final static int REPETITION_DRAW = 1;
+  final static int REPETITION_AVOID = 2;
+  final static int REPETITION = repetitionRule(System.getProperty("network.repetition", "draw"));
+  final static int AVOID_SCORE = 1 << 24;
+  private final static int FILTER_SIZE = 1024;
+
+  final static int CHIPS = 10;
+
+  private static int instances;
 
   //  Creates a machine player with the given color.  Color is either 0 (black)
   //  or 1 (white).  (White has the first move.)
@@ -34,6 +129,60 @@ public class MachinePlayer extends Player {
       oppColor = 'B';
     }
     this.board = new Board();
+    resetAccumulator();
+    resetHistory('W');
+  }
+
+  //  Creates a machine player for the side to move in a given position, for
+  //  analysis.  The player's chip count is derived from the position.
+  /**
+   *  @param position the position to search
+   *  @param searchDepth the search depth
+   */
+  MachinePlayer(Position position, int searchDepth) {
+    this(position.toMove() == 'W' ? 1 : 0, searchDepth, position.dim());
+    for (int x = 0; x < position.dim(); x++) {
+      for (int y = 0; y < position.dim(); y++) {
+        char c = position.get(x, y);
+        if (c != ' ') {
+          board.addPiece(x, y, c);
+        }
+      }
+    }
+    pieces -= position.count(myColor);
+    resetAccumulator();
+    resetHistory(myColor);
+  }
+
+  private static int repetitionRule(String rule) {
+    if (rule.equals("off")) {
+      return REPETITION_OFF;
+    } else if (rule.equals("avoid")) {
+      return REPETITION_AVOID;
+    }
+    return REPETITION_DRAW;
+  }
+
+  private static synchronized int nextInstance() {
+    return ++instances;
+  }
+
+  //  Creates the statistics bean and the trace file of this player, when
+  //  they are enabled, on its first search, so that players that never
+  //  search hold neither.  Called by every method that starts a search.
+  private void instrument() {
+    if (instrumented) {
+      return;
+    }
+    instrumented = true;
+    if (SearchStats.ENABLED || SearchTrace.PREFIX != null) {
+      String name = myColor + "-" + nextInstance();
+      if (SearchStats.ENABLED) {
+        stats = new SearchStats(name);
+        stats.register();
+      }
+      trace = SearchTrace.create(name);
+    }
   }
 
   //  Creates a machine player with the given color and search depth.  Color is
@@ -47,17 +196,86 @@ public class MachinePlayer extends Player {
     this.searchDepth = searchDepth;
   }
 
+  //  Creates a machine player for a variant played on a dim x dim board, with
+  //  chipsFor(dim) chips per player.
+  /**
+   *  @param color 0 for black, 1 for white
+   *  @param searchDepth the search depth
+   *  @param dim the board dimension
+   */
+  public MachinePlayer(int color, int searchDepth, int dim) {
+    this(color, searchDepth);
+    this.board = new Board(dim);
+    this.pieces = chipsFor(dim);
+    resetAccumulator();
+    resetHistory('W');
+  }
+
+  //  Returns the number of chips each player gets on a dim x dim board: ten
+  //  on the standard board, and one more or fewer per row of difference.
+  /**
+   *  @param dim the board dimension
+   *  @return the chips per player
+   */
+  public static int chipsFor(int dim) {
+    return CHIPS + dim - Board.DIM;
+  }
+
   //  Checks whether a particular move is valid by taking enforcing the constraints of the game. 
   //  Does not allow pieces to be placed outside the bounds of the board, in the corners or in 
   //  the opponent's starting or ending zones. Does not allow pieces to placed such that 3 pieces
-  //  are connected. Returns true if the move is valid and vice versa.
+  //  are connected. Returns true if the move is valid and vice versa.  The placement rules are
+  //  looked up in the board's legal-square masks.
   /** 
    *  @param m the Move that is being checked
    *  @param color the player who is trying to make said move 
    *  @return true or false depending on the move's validity
    */
   private boolean isValidMove(Move m, char color) {
-    if (m.x1 < 0 || m.y1 < 0 || m.x1 >= Board.DIM || m.y1 >= Board.DIM) {
+    int dim = board.dim();
+    if (m.x1 < 0 || m.y1 < 0 || m.x1 >= dim || m.y1 >= dim) {
+      //Move is out of bounds
+      return false;
+    }
+
+    if (board.getContents(m.x1, m.y1) != null) {
+      //Move is already occupied
+      return false;
+    }
+
+    if (m.moveKind != Move.STEP) {
+      return board.isLegal(m.x1, m.y1, color);
+    }
+
+    if (m.x2 < 0 || m.y2 < 0 || m.x2 >= dim || m.y2 >= dim) {
+      //Step starts out of bounds
+      return false;
+    }
+
+    //The masks must not count the chip being moved
+    int from = m.x2 * dim + m.y2;
+    char owner = Board.test(board.bits('B'), from) ? 'B'
+                 : Board.test(board.bits('W'), from) ? 'W' : 0;
+    if (owner == 0) {
+      return board.isLegal(m.x1, m.y1, color);
+    }
+    board.removePiece(m.x2, m.y2);
+    boolean legal = board.isLegal(m.x1, m.y1, color);
+    board.addPiece(m.x2, m.y2, owner);
+    return legal;
+  }
+
+  //  The original form of isValidMove, which tries the move and inspects the neighbors of the
+  //  new chip through Piece.neighbors().  Kept as the reference that the board's masks are
+  //  checked against.
+  /** 
+   *  @param m the Move that is being checked
+   *  @param color the player who is trying to make said move 
+   *  @return true or false depending on the move's validity
+   */
+  boolean isValidMoveByNeighbors(Move m, char color) {
+    int dim = board.dim();
+    if (m.x1 < 0 || m.y1 < 0 || m.x1 >= dim || m.y1 >= dim) {
       //Move is out of bounds
       return false;
     }
@@ -67,12 +285,12 @@ public class MachinePlayer extends Player {
       return false;
     }
 
-    if ((m.x1 == 0 && m.y1 == 0) || (m.x1 == Board.DIM - 1 && m.y1 == 0) || (m.x1 == 0 && m.y1 == Board.DIM - 1) || (m.x1 == Board.DIM - 1 && m.y1 == Board.DIM - 1)) {
+    if ((m.x1 == 0 && m.y1 == 0) || (m.x1 == dim - 1 && m.y1 == 0) || (m.x1 == 0 && m.y1 == dim - 1) || (m.x1 == dim - 1 && m.y1 == dim - 1)) {
       //Move is in a corner
       return false;
     }
 
-    if (((color == 'B') && (m.x1 == 0 || m.x1 == Board.DIM - 1)) || ((color == 'W') && (m.y1 == 0 || m.y1 == Board.DIM - 1))) {
+    if (((color == 'B') && (m.x1 == 0 || m.x1 == dim - 1)) || ((color == 'W') && (m.y1 == 0 || m.y1 == dim - 1))) {
       //Move is in opponent's goal
       return false;
     }
@@ -110,27 +328,68 @@ public class MachinePlayer extends Player {
 
   //  Loops through the board with the conditions of Move Legality and
   //  stores all the moves that are valid for a particular color in a DList.
+  //  The squares come from the board's legal masks; for steps, each chip is
+  //  lifted off the board while its targets are listed.
   /** 
    *  @param color
    *  @return a DList containing all the possible valid moves for a certain player
    */
-  private DList listMoves(char color) {
+  DList listMoves(char color) {
+    return listMoves(color, pieces > 0);
+  }
+
+  //  Lists the add moves (if "add") or the step moves of a color, whatever
+  //  the chip counts.  Used by Perft to follow both players' chip counts.
+  /**
+   *  @param color the color of the player moving
+   *  @param add true for add moves, false for step moves
+   *  @return a DList containing the valid moves
+   */
+  DList listMoves(char color, boolean add) {
+    DList moves = new DList();
+    if (add) {
+      addMoves(moves, color, -1, -1);
+      return moves;
+    }
+    int dim = board.dim();
+    long[] own = board.bits(color).clone();
+    for (int w = 0; w < own.length; w++) {
+      for (long bits = own[w]; bits != 0; bits &= bits - 1) {
+        int square = (w << 6) + Long.numberOfTrailingZeros(bits);
+        int i = square / dim;
+        int j = square % dim;
+        board.removePiece(i, j);
+        addMoves(moves, color, i, j);
+        board.addPiece(i, j, color);
+      }
+    }
+    return moves;
+  }
+
+  //  Lists moves as listMoves(color, add) does, in the same order, but by
+  //  trying every square with isValidMoveByNeighbors.  The reference that
+  //  Perft checks listMoves against.
+  /**
+   *  @param color the color of the player moving
+   *  @param add true for add moves, false for step moves
+   *  @return a DList containing the valid moves
+   */
+  DList listMovesByNeighbors(char color, boolean add) {
     DList moves = new DList();
-    for (int i = 0; i < Board.DIM; i++) {
-      for (int j = 0; j < Board.DIM; j++) {
-        if (pieces > 0) {
+    int dim = board.dim();
+    for (int i = 0; i < dim; i++) {
+      for (int j = 0; j < dim; j++) {
+        if (add) {
           Move m = new Move(i, j);
-          if (isValidMove(m, color)) {
+          if (isValidMoveByNeighbors(m, color)) {
             moves.insertBack(m);
           }
-        } else {
-          if (board.getContents(i, j) != null && board.getContents(i, j).color() == color) {
-            for (int u = 0; u < Board.DIM; u++) {
-              for (int v = 0; v < Board.DIM; v++) {
-                Move m = new Move(u, v, i, j);
-                if (isValidMove(m, color)) {
-                  moves.insertBack(m);
-                }
+        } else if (board.getContents(i, j) != null && board.getContents(i, j).color() == color) {
+          for (int u = 0; u < dim; u++) {
+            for (int v = 0; v < dim; v++) {
+              Move m = new Move(u, v, i, j);
+              if (isValidMoveByNeighbors(m, color)) {
+                moves.insertBack(m);
               }
             }
           }
@@ -140,13 +399,206 @@ public class MachinePlayer extends Player {
     return moves;
   }
 
+  //  Appends a move to every square in the board's legal mask for "color", in
+  //  x-major order: adds if fromX is negative, otherwise steps from
+  //  (fromX, fromY), whose chip has been lifted off the board.
+  /**
+   *  @param moves the list the moves are appended to
+   *  @param color the color of the player moving
+   *  @param fromX the x coordinate of the chip that steps, or -1
+   *  @param fromY the y coordinate of the chip that steps
+   */
+  private void addMoves(DList moves, char color, int fromX, int fromY) {
+    long[] legal = board.legal(color);
+    int dim = board.dim();
+    for (int w = 0; w < legal.length; w++) {
+      for (long bits = legal[w]; bits != 0; bits &= bits - 1) {
+        int square = (w << 6) + Long.numberOfTrailingZeros(bits);
+        int u = square / dim;
+        int v = square % dim;
+        if (fromX < 0) {
+          moves.insertBack(new Move(u, v));
+        } else if (u != fromX || v != fromY) {
+          moves.insertBack(new Move(u, v, fromX, fromY));
+        }
+      }
+    }
+  }
+
   //  Performs an evaluation algorithm on a board and returns a rating for a player.
-  //  Used in the game tree search to identify the best possible move.
+  //  Used in the game tree search to identify the best possible move.  The
+  //  terms are weighted by "weights"; with an evaluation network loaded,
+  //  returns the network's score instead.
   /** 
+   *  @param last the move that led to this position, or null
    *  @return an int representing the probability of of a player winning for the board's current state
    */
-  private int boardEval() {
-  	return ((board.connects(new DList(), myColor) * board.connects(new DList(), myColor) * board.connects(new DList(), myColor))) - ((board.connects(new DList(), oppColor) * board.connects(new DList(), oppColor) * board.connects(new DList(), oppColor)));
+  private int boardEval(Move last) {
+    if (accumulator != null) {
+      int score = accumulator.evaluate();
+      return myColor == 'W' ? score : -score;
+    }
+    int me = board.connects(new DList(), myColor);
+    int opp = board.connects(new DList(), oppColor);
+    int myDistance = 0;
+    int oppDistance = 0;
+    if (weights.usesDistance()) {
+      myDistance = distance(myColor, last);
+      oppDistance = distance(oppColor, last);
+    }
+    if (!weights.usesGoals()) {
+      return weights.side(me, 0, 0, myDistance) - weights.side(opp, 0, 0, oppDistance);
+    }
+    return weights.side(me, board.goalChips(myColor, false), board.goalChips(myColor, true), myDistance)
+           - weights.side(opp, board.goalChips(oppColor, false), board.goalChips(oppColor, true),
+                          oppDistance);
+  }
+
+  //  Returns the network distance of "side" in the current position,
+  //  reusing the one prepareDistance() found if "last" is an add by the
+  //  other side, from that position, outside the chain it found.
+  /**
+   *  @param side the color whose distance is wanted
+   *  @param last the move that led to this position, or null
+   *  @return the side's network distance
+   */
+  private int distance(char side, Move last) {
+    char other = side == 'W' ? 'B' : 'W';
+    if (last != null && last.moveKind == Move.ADD && side == reuseColor && reusePath != null
+        && !Board.test(reusePath, last.x1 * board.dim() + last.y1)
+        && (board.hash() ^ board.zobrist(last.x1, last.y1, other)) == reuseKey) {
+      return reuseDistance;
+    }
+    return distanceSearch().distance(board.bits(side), board.bits(other), side, null);
+  }
+
+  //  Finds the network distance of "side" in the current position and the
+  //  squares of its chain, for the children of this node to reuse.
+  /**
+   *  @param side the color that does not move next
+   */
+  private void prepareDistance(char side) {
+    long[] own = board.bits(side);
+    if (reusePath == null || reusePath.length != own.length) {
+      reusePath = new long[own.length];
+    }
+    reuseDistance = distanceSearch().distance(own, board.bits(side == 'W' ? 'B' : 'W'), side,
+                                              reusePath);
+    reuseColor = side;
+    reuseKey = board.hash();
+  }
+
+  //  Returns the NetworkDistance for this board, creating it on first use.
+  private NetworkDistance distanceSearch() {
+    if (networkDistance == null || networkDistance.dim() != board.dim()) {
+      networkDistance = new NetworkDistance(board.dim());
+    }
+    return networkDistance;
+  }
+
+  //  The first goal areas of each color on a standard board, as bitboards;
+  //  the second are BLACK_GOAL << 7 and WHITE_GOAL << 56.
+  final static long BLACK_GOAL = 0x0001010101010100L;
+  final static long WHITE_GOAL = 0x7EL;
+
+  //  Computes boardEval() for the position after each move in "moves" by
+  //  "color", all at once.  Only used on standard-size boards.
+  /**
+   *  @param moves the moves to score
+   *  @param color the color making the moves
+   *  @return scores, in the order of moves; valid until the next call
+   */
+  private int[] evaluateChildren(DList moves, char color) {
+    int n = moves.length();
+    if (batchMine.length < n) {
+      int size = Math.max(n, 2 * batchMine.length);
+      batchMine = new long[size];
+      batchTheirs = new long[size];
+      batchMyCount = new int[size];
+      batchOppCount = new int[size];
+      batchScores = new int[size];
+      batchMyDistance = new int[size];
+      batchOppDistance = new int[size];
+      if (batch == null) {
+        batch = new BatchEval();
+      }
+    }
+    long mine = board.bits(myColor)[0];
+    long theirs = board.bits(oppColor)[0];
+    boolean distances = weights.usesDistance();
+    int i = 0;
+    try {
+      for (ListNode node = moves.front(); node.isValidNode(); node = node.next()) {
+        Move m = (Move) node.item();
+        long moved = color == myColor ? mine : theirs;
+        if (m.moveKind == Move.STEP) {
+          moved &= ~(1L << (m.x2 * Board.DIM + m.y2));
+        }
+        moved |= 1L << (m.x1 * Board.DIM + m.y1);
+        batchMine[i] = color == myColor ? moved : mine;
+        batchTheirs[i] = color == myColor ? theirs : moved;
+        if (distances) {
+          childDistances(i, m, color, batchMine[i], batchTheirs[i]);
+        }
+        i++;
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    }
+    batch.connects(batchMine, batchTheirs, n, batchMyCount);
+    batch.connects(batchTheirs, batchMine, n, batchOppCount);
+    boolean goals = weights.usesGoals();
+    long myNear = myColor == 'B' ? BLACK_GOAL : WHITE_GOAL;
+    long myFar = myColor == 'B' ? BLACK_GOAL << 7 : WHITE_GOAL << 56;
+    long oppNear = myColor == 'B' ? WHITE_GOAL : BLACK_GOAL;
+    long oppFar = myColor == 'B' ? WHITE_GOAL << 56 : BLACK_GOAL << 7;
+    for (i = 0; i < n; i++) {
+      int me = batchMyCount[i];
+      int opp = batchOppCount[i];
+      int myDistance = distances ? batchMyDistance[i] : 0;
+      int oppDistance = distances ? batchOppDistance[i] : 0;
+      if (goals) {
+        long m = batchMine[i];
+        long t = batchTheirs[i];
+        batchScores[i] = weights.side(me, Long.bitCount(m & myNear), Long.bitCount(m & myFar),
+                                      myDistance)
+                         - weights.side(opp, Long.bitCount(t & oppNear), Long.bitCount(t & oppFar),
+                                        oppDistance);
+      } else {
+        batchScores[i] = weights.side(me, 0, 0, myDistance) - weights.side(opp, 0, 0, oppDistance);
+      }
+    }
+    return batchScores;
+  }
+
+  //  Fills batchMyDistance[i] and batchOppDistance[i] for the child reached
+  //  by move m of "color", reusing prepareDistance()'s result for the side
+  //  not moving where the move allows it.
+  /**
+   *  @param i the index of the child
+   *  @param m the move
+   *  @param color the color making the move
+   *  @param mine this player's chips after the move
+   *  @param theirs the opponent's chips after the move
+   */
+  private void childDistances(int i, Move m, char color, long mine, long theirs) {
+    char other = color == 'W' ? 'B' : 'W';
+    long moved = color == myColor ? mine : theirs;
+    long still = color == myColor ? theirs : mine;
+    distanceOwn[0] = moved;
+    distanceOther[0] = still;
+    int moverDistance = distanceSearch().distance(distanceOwn, distanceOther, color, null);
+    int stillDistance;
+    if (m.moveKind == Move.ADD && other == reuseColor && reuseKey == board.hash()
+        && !Board.test(reusePath, m.x1 * Board.DIM + m.y1)) {
+      stillDistance = reuseDistance;
+    } else {
+      distanceOwn[0] = still;
+      distanceOther[0] = moved;
+      stillDistance = distanceSearch().distance(distanceOwn, distanceOther, other, null);
+    }
+    batchMyDistance[i] = color == myColor ? moverDistance : stillDistance;
+    batchOppDistance[i] = color == myColor ? stillDistance : moverDistance;
   }
 
   //  Calculates the move that should be performed by the MachinePlayer with a given board. Uses
@@ -161,9 +613,44 @@ public class MachinePlayer extends Player {
    *  @return a Best object containing the optimal move
    */
   public Best calcMove(char color, char opp, int alpha, int beta, int depth, Move previous) {
+    if (trace == null) {
+      return searchNode(color, opp, alpha, beta, depth, previous);
+    }
+    trace.enter(depth, previous, alpha, beta);
+    Best best = searchNode(color, opp, alpha, beta, depth, previous);
+    trace.exit(best.score, cutoff);
+    cutoff = false;
+    return best;
+  }
+
+  //  Does the work of calcMove for one node.
+  /**
+   *  @param color the color of the player
+   *  @param opp the color of the opposing player
+   *  @param alpha a score that the computer knows with certainty it can achieve
+   *  @param beta a score that the opponent can achieve
+   *  @param depth the level that the tree is at
+   *  @param previous the last move that was made at that step in the tree
+   *  @return a Best object containing the optimal move
+   */
+  private Best searchNode(char color, char opp, int alpha, int beta, int depth, Move previous) {
     Best myBest = new Best();
     Best reply;
 
+    nodes++;
+    if (limited && (nodes & 1023) == 0 && limitReached()) {
+      aborted = true;
+    }
+    if (aborted) {
+      return myBest;
+    }
+    if (pv != null && depth < pvLength.length) {
+      pvLength[depth] = depth;
+    }
+    if (SearchStats.ENABLED) {
+      stats.node(depth);
+      stats.networkCheck(2);
+    }
     boolean win = board.hasNetwork(color);
     boolean lose = board.hasNetwork(opp);
     if (win) {
@@ -175,14 +662,22 @@ public class MachinePlayer extends Player {
     	}
       return new Best(null, Integer.MIN_VALUE);
     }
-    if (pieces > 0) {
-      if (depth == searchDepth) {
-        return new Best(null, boardEval());
+    if (REPETITION != REPETITION_OFF && depth > 0 && repetitions() > 0) {
+      if (REPETITION == REPETITION_DRAW) {
+        return new Best(null, 0);
       }
-    } else {
-      if (depth == searchDepth - 1) {
-        return new Best(null, boardEval());
+      return new Best(null, color == myColor ? AVOID_SCORE : -AVOID_SCORE);
+    }
+    int leafDepth = pieces > 0 ? searchDepth : searchDepth - 1;
+    if (depth == leafDepth) {
+      if (SearchStats.ENABLED) {
+        stats.leaf();
+      }
+      if (pendingValid) {
+        pendingValid = false;
+        return new Best(null, pendingEval);
       }
+      return new Best(null, boardEval(previous));
     }
     if (color == myColor) {
       myBest.score = Integer.MIN_VALUE;
@@ -190,36 +685,573 @@ public class MachinePlayer extends Player {
       myBest.score = Integer.MAX_VALUE;
     }
     DList moves = listMoves(color);
+    if (moves.length() == 0) {
+      // No legal move: the position is scored as it stands, with no best move.
+      return new Best(null, boardEval(previous));
+    }
     try {
 		  myBest.m = (Move)moves.front().item();
 	  } catch (InvalidNodeException e1) {
-		  e1.printStackTrace();
+		  // The list is not empty.
 	  }
+    int[] scores = null;
+    if (accumulator == null && depth + 1 == leafDepth && weights.usesDistance()) {
+      prepareDistance(opp);
+    }
+    if (BATCH_EVAL && accumulator == null && depth + 1 == leafDepth && board.dim() == Board.DIM) {
+      scores = evaluateChildren(moves, color);
+    }
     DListNode curr = (DListNode)moves.front();
+    int index = 0;
     while (true) {
       try {
         makeMove((Move)curr.item(), color);
+        if (scores != null) {
+          pendingEval = scores[index];
+          pendingValid = true;
+        }
         reply = calcMove(opp, color, alpha, beta, depth + 1, (Move)curr.item());
+        pendingValid = false;
         unMove((Move)curr.item(), color);
+        if (aborted) {
+          return myBest;
+        }
         if (color == myColor && reply.score > myBest.score) {
           myBest.m = (Move)curr.item();
           myBest.score = reply.score;
           alpha = reply.score;
+          updatePv(depth, myBest.m);
         } else if (color == oppColor && reply.score < myBest.score) {
           myBest.m = (Move)curr.item();
           myBest.score = reply.score;
           beta = reply.score;
+          updatePv(depth, myBest.m);
         }
         if (alpha >= beta) {
+          if (SearchStats.ENABLED) {
+            stats.cutoff(index);
+          }
+          cutoff = true;
           return myBest;
         }
         curr = (DListNode)curr.next();
+        index++;
       } catch (InvalidNodeException e) {    	
         return myBest;
       }
     }
   }
 
+  //  Records m followed by the child's line as the principal variation of the
+  //  node at depth "depth".
+  /**
+   *  @param depth the depth of the node
+   *  @param m the node's new best move
+   */
+  private void updatePv(int depth, Move m) {
+    if (pv == null || depth + 1 >= pvLength.length) {
+      return;
+    }
+    Move[] line = pv[depth];
+    Move[] child = pv[depth + 1];
+    line[depth] = m;
+    int length = pvLength[depth + 1];
+    for (int i = depth + 1; i < length; i++) {
+      line[i] = child[i];
+    }
+    pvLength[depth] = Math.max(length, depth + 1);
+  }
+
+  //  Allocates the principal variation table for the current search depth.
+  private void preparePv() {
+    if (pvLength == null || pvLength.length != searchDepth + 1) {
+      pv = new Move[searchDepth + 1][searchDepth + 1];
+      pvLength = new int[searchDepth + 1];
+    }
+  }
+
+  //  Returns the principal variation of the last search, which starts with
+  //  the best move "best" returned by that search.
+  /**
+   *  @param best the best move of the last search, or null
+   *  @return the moves of the principal variation
+   */
+  Move[] principalVariation(Move best) {
+    if (best == null) {
+      return new Move[0];
+    }
+    if (pv == null || pvLength[0] == 0 || pv[0][0] != best) {
+      return new Move[] {best};
+    }
+    Move[] line = new Move[pvLength[0]];
+    System.arraycopy(pv[0], 0, line, 0, line.length);
+    return line;
+  }
+
+  //  Returns the principal variation of the result of the last
+  //  searchIterative(), which starts with its best move.
+  /**
+   *  @return the moves of the principal variation; none if no depth completed
+   */
+  Move[] iterativePrincipalVariation() {
+    return iterativePv.clone();
+  }
+
+  //  Scores one root move for this player with a full-window search of the
+  //  remaining depth.  Used by OpeningBookBuilder to rank candidate moves.
+  /**
+   *  @param m a valid move for this player
+   *  @return the score of the position after m
+   */
+  int scoreMove(Move m) {
+    instrument();
+    preparePv();
+    makeMove(m, myColor);
+    Best reply = calcMove(oppColor, myColor, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, m);
+    unMove(m, myColor);
+    return reply.score;
+  }
+
+  //  Returns the color of this player, 'B' or 'W'.
+  /**
+   *  @return the color of this player
+   */
+  char color() {
+    return myColor;
+  }
+
+  //  Returns the hash of the current position with this player to move.
+  /**
+   *  @return the key of the position in books and caches
+   */
+  long positionKey() {
+    return board.hash(myColor);
+  }
+
+  //  Returns true if the player's board holds a network for the given color.
+  /**
+   *  @param color 'B' or 'W'
+   *  @return true if color has completed a network
+   */
+  boolean hasNetwork(char color) {
+    return board.hasNetwork(color);
+  }
+
+  //  Releases resources held outside the player, such as its JMX bean and
+  //  trace file.  The player must not be used afterwards.
+  void close() {
+    instrumented = true;
+    if (stats != null) {
+      stats.unregister();
+    }
+    if (trace != null) {
+      trace.close();
+    }
+  }
+
+  //  Sets the opening book consulted by chooseMove, or null for none.  By
+  //  default the book named by the "network.book" property is used.
+  /**
+   *  @param book the book to use
+   */
+  public void setOpeningBook(OpeningBook book) {
+    this.book = book;
+  }
+
+  //  Sets the evaluation network, or null for the hand-written evaluation.
+  //  By default the network named by the "network.eval.weights" property is
+  //  used.  A network built for another board size is ignored.
+  /**
+   *  @param network the network to use
+   */
+  public void setNeuralEval(NeuralEval network) {
+    this.network = network;
+    resetAccumulator();
+  }
+
+  //  Rebuilds the network's accumulator from the current board.
+  private void resetAccumulator() {
+    if (network != null && network.dim() == board.dim()) {
+      accumulator = network.accumulator(board);
+    } else {
+      accumulator = null;
+    }
+  }
+
+  //  Empties the position history, leaving only the current position.
+  /**
+   *  @param toMove the color of the player to move
+   */
+  private void resetHistory(char toMove) {
+    historyLength = 0;
+    java.util.Arrays.fill(historyFilter, 0);
+    pushHistory(board.hash(toMove), false);
+  }
+
+  //  Records the position reached by a move.
+  /**
+   *  @param key the hash of the position, with the side to move
+   *  @param reversible false if no earlier position can recur after the move
+   */
+  private void pushHistory(long key, boolean reversible) {
+    if (historyLength == history.length) {
+      history = java.util.Arrays.copyOf(history, 2 * historyLength);
+      historyStart = java.util.Arrays.copyOf(historyStart, 2 * historyLength);
+    }
+    history[historyLength] = key;
+    historyStart[historyLength] = reversible ? historyStart[historyLength - 1] : historyLength;
+    historyFilter[(int) key & (FILTER_SIZE - 1)]++;
+    historyLength++;
+  }
+
+  //  Forgets the position reached by the last move.
+  private void popHistory() {
+    historyLength--;
+    historyFilter[(int) history[historyLength] & (FILTER_SIZE - 1)]--;
+  }
+
+  //  Returns how many times the current position occurred before, with the
+  //  same side to move, in the game and the current search line.
+  /**
+   *  @return the number of earlier occurrences
+   */
+  int repetitions() {
+    int top = historyLength - 1;
+    long key = history[top];
+    if (historyFilter[(int) key & (FILTER_SIZE - 1)] < 2) {
+      return 0;
+    }
+    int count = 0;
+    for (int i = top - 2; i >= historyStart[top]; i -= 2) {
+      if (history[i] == key) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  //  Returns a legal book move for the current position, or null if the
+  //  position is out of book.  Book moves only cover the ADD phase.
+  /**
+   *  @return a book move or null
+   */
+  private Move bookMove() {
+    if (book == null || pieces <= 0 || book.dim() != board.dim()) {
+      return null;
+    }
+    Move m = book.probe(positionKey(), random);
+    if (m == null || m.moveKind != Move.ADD || !isValidMove(m, myColor)) {
+      return null;
+    }
+    return m;
+  }
+
+  //  Sets the weights of the hand-written evaluation.  By default the
+  //  weights in the file named by the "network.eval.tuned" property are
+  //  used, or EvalWeights.DEFAULT.
+  /**
+   *  @param weights the weights to use
+   */
+  public void setEvalWeights(EvalWeights weights) {
+    this.weights = weights;
+  }
+
+  //  Sets the analysis cache consulted and filled by searchPosition, or null
+  //  for none.  By default the cache named by the "network.cache" property is
+  //  used.
+  /**
+   *  @param cache the cache to use
+   */
+  public void setAnalysisCache(AnalysisCache cache) {
+    this.cache = cache;
+  }
+
+  //  Returns the key of the current position in the analysis cache.  Zobrist
+  //  keys of different board sizes overlap, so the size is mixed in, and so
+  //  are the evaluation and the repetition rule, which change the results.
+  /**
+   *  @return the cache key
+   */
+  private long cacheKey() {
+    long config = weights.fingerprint() * 31 + REPETITION;
+    if (network != null) {
+      config ^= network.fingerprint();
+    }
+    return (positionKey() + board.dim() * 0x9E3779B97F4A7C15L) ^ config;
+  }
+
+  //  Returns true if the game so far cannot change a search from the current
+  //  position, so that its result may be cached: repetitions are ignored, or
+  //  no earlier position can recur.  With earlier positions in reach, a
+  //  search scores moves that repeat them as draws or avoids them, and the
+  //  same position reached through another game would get another result.
+  /**
+   *  @return true if the position's search results may be cached
+   */
+  private boolean cacheable() {
+    return REPETITION == REPETITION_OFF || historyStart[historyLength - 1] == historyLength - 1;
+  }
+
+  //  Returns the move stored in the analysis cache for the current position if
+  //  it comes from a search at least as deep as this player's, or null.
+  /**
+   *  @return a cached result or null
+   */
+  private Best cachedResult() {
+    if (cache == null || !cacheable()) {
+      return null;
+    }
+    AnalysisCache.Entry entry = cache.probe(cacheKey());
+    if (entry == null || entry.depth < searchDepth || entry.bound != AnalysisCache.EXACT
+        || entry.move.moveKind != (pieces > 0 ? Move.ADD : Move.STEP)
+        || !isValidMove(entry.move, myColor)) {
+      return null;
+    }
+    return new Best(entry.move, entry.score);
+  }
+
+  //  Records a full-window search result in the analysis cache.
+  /**
+   *  @param depth the depth searched
+   *  @param best the result
+   */
+  private void cacheResult(int depth, Best best) {
+    if (cache != null && best != null && best.m != null && cacheable()) {
+      cache.store(cacheKey(), depth, best.score, AnalysisCache.EXACT, best.m);
+    }
+  }
+
+  //  Runs the root search from the current position, collecting statistics
+  //  when they are enabled.  A result found in the analysis cache is returned
+  //  without searching.
+  /**
+   *  @return the best move found and its score
+   */
+  Best searchPosition() {
+    instrument();
+    nodes = 0;
+    Best cached = cachedResult();
+    if (cached != null) {
+      return cached;
+    }
+    preparePv();
+    if (SearchStats.ENABLED) {
+      stats.begin();
+    }
+    if (trace != null) {
+      trace.begin(positionKey(), myColor, searchDepth);
+    }
+    Best best = calcMove(myColor, oppColor, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, null);
+    if (trace != null) {
+      trace.end(best, nodes);
+    }
+    if (SearchStats.ENABLED) {
+      stats.depthDone(searchDepth);
+      stats.end(searchDepth, nodes);
+    }
+    cacheResult(searchDepth, best);
+    return best;
+  }
+
+  //  Iterative deepening search with limits, for engine protocols.  Searches
+  //  depth 1, 2, ... up to maxDepth (from 2 in the STEP phase, where depth 1
+  //  evaluates nothing) and reports each completed depth to the listener.
+  //  The search also stops once the deadline or node limit is passed or
+  //  requestStop() is called, but only after the first depth is complete;
+  //  the result of an interrupted depth is discarded.
+  /**
+   *  @param maxDepth the deepest search to run
+   *  @param deadline System.nanoTime() at which to stop, or 0 for none
+   *  @param maxNodes the node limit, or 0 for none
+   *  @param listener receives a report per depth, or null
+   *  @return the best move and score of the deepest completed search
+   */
+  public Best searchIterative(int maxDepth, long deadline, long maxNodes, SearchListener listener) {
+    instrument();
+    int savedDepth = searchDepth;
+    long start = System.nanoTime();
+    long total = 0;
+    int reached = 0;
+    Best result = null;
+    this.deadline = deadline;
+    nodeLimit = maxNodes;
+    aborted = false;
+    iterativePv = new Move[0];
+    if (SearchStats.ENABLED) {
+      stats.begin();
+    }
+    try {
+      for (int d = pieces > 0 ? 1 : 2; d <= maxDepth; d++) {
+        searchDepth = d;
+        preparePv();
+        nodes = 0;
+        if (trace != null) {
+          trace.begin(positionKey(), myColor, d);
+        }
+        Best best = calcMove(myColor, oppColor, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, null);
+        if (trace != null) {
+          trace.end(aborted ? null : best, nodes);
+        }
+        total += nodes;
+        if (aborted) {
+          break;
+        }
+        result = best;
+        reached = d;
+        iterativePv = principalVariation(best.m);
+        if (SearchStats.ENABLED) {
+          stats.depthDone(d);
+        }
+        if (listener != null) {
+          listener.depthDone(d, best.score, total, (System.nanoTime() - start) / 1000000,
+                             iterativePv.clone());
+        }
+        if (best.m == null || best.score >= Integer.MAX_VALUE - d || best.score == Integer.MIN_VALUE) {
+          // The game is decided; deeper searches cannot change the result.
+          break;
+        }
+        if (maxNodes > 0 && total >= maxNodes) {
+          break;
+        }
+        limited = true;
+        nodeLimit = maxNodes == 0 ? 0 : maxNodes - total;
+        if (limitReached()) {
+          break;
+        }
+      }
+    } finally {
+      limited = false;
+      aborted = false;
+      stopRequested = false;
+      searchDepth = savedDepth;
+    }
+    nodes = total;
+    if (SearchStats.ENABLED) {
+      stats.end(reached, total);
+    }
+    cacheResult(reached, result);
+    return result;
+  }
+
+  //  Returns true if searchIterative should stop.  Called every 1024 nodes.
+  private boolean limitReached() {
+    if (stopRequested) {
+      return true;
+    }
+    if (nodeLimit > 0 && nodes >= nodeLimit) {
+      return true;
+    }
+    long d = deadline;
+    return d != 0 && System.nanoTime() - d >= 0;
+  }
+
+  //  Asks a running searchIterative to stop as soon as possible.  May be
+  //  called from any thread.  The request is cleared when the search ends,
+  //  not when it starts, so one made just before the search thread gets
+  //  going still stops it.
+  public void requestStop() {
+    stopRequested = true;
+  }
+
+  //  Sets or moves the deadline of a running searchIterative, as when a
+  //  ponder search becomes a real one.  May be called from any thread.
+  /**
+   *  @param deadline System.nanoTime() at which to stop, or 0 for none
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  //  Multi-PV search: finds the k best moves of the current position, each
+  //  with an exact score and its principal variation, best first.  The
+  //  root moves share one pass: once k lines are known, every further move
+  //  is searched with alpha set to the k-th best score, so moves that cannot
+  //  enter the top k are cut off as early as in a normal search.
+  /**
+   *  @param k the number of lines wanted
+   *  @return up to k lines; fewer if there are fewer legal moves, none if
+   *          the game is already over
+   */
+  public Analysis[] topMoves(int k) {
+    return searchLines(null, k);
+  }
+
+  //  Does the work of topMoves, labelling each line with "position".
+  Analysis[] searchLines(Position position, int k) {
+    instrument();
+    nodes = 0;
+    preparePv();
+    if (SearchStats.ENABLED) {
+      stats.begin();
+    }
+    Move[] best = new Move[k];
+    int[] scores = new int[k];
+    Move[][] lines = new Move[k][];
+    int found = 0;
+    if (trace != null) {
+      trace.begin(positionKey(), myColor, searchDepth);
+    }
+    if (!board.hasNetwork(myColor) && !board.hasNetwork(oppColor)) {
+      DList moves = listMoves(myColor);
+      try {
+        for (ListNode n = moves.front(); n.isValidNode(); n = n.next()) {
+          Move m = (Move) n.item();
+          int alpha = found < k ? Integer.MIN_VALUE : scores[k - 1];
+          makeMove(m, myColor);
+          Best reply = calcMove(oppColor, myColor, alpha, Integer.MAX_VALUE, 1, m);
+          unMove(m, myColor);
+          if (found == k && reply.score <= alpha) {
+            continue;
+          }
+          int i = found < k ? found++ : k - 1;
+          while (i > 0 && scores[i - 1] < reply.score) {
+            best[i] = best[i - 1];
+            scores[i] = scores[i - 1];
+            lines[i] = lines[i - 1];
+            i--;
+          }
+          best[i] = m;
+          scores[i] = reply.score;
+          lines[i] = childLine(m);
+        }
+      } catch (InvalidNodeException e) {
+        // Iteration stopped at the end of the list.
+      }
+    }
+    if (trace != null) {
+      trace.end(found > 0 ? new Best(best[0], scores[0]) : null, nodes);
+    }
+    if (SearchStats.ENABLED) {
+      stats.depthDone(searchDepth);
+      stats.end(searchDepth, nodes);
+    }
+    Analysis[] result = new Analysis[found];
+    for (int i = 0; i < found; i++) {
+      result[i] = new Analysis(position, best[i], scores[i], lines[i], nodes);
+    }
+    return result;
+  }
+
+  //  Returns root move m followed by the principal variation just found
+  //  for the node at depth 1.
+  private Move[] childLine(Move m) {
+    int length = pvLength.length > 1 ? Math.max(pvLength[1], 1) : 1;
+    Move[] line = new Move[length];
+    line[0] = m;
+    for (int i = 1; i < length; i++) {
+      line[i] = pv[1][i];
+    }
+    return line;
+  }
+
+  //  Returns the number of nodes visited by the last search.
+  /**
+   *  @return the node count of the last search
+   */
+  public long nodes() {
+    return nodes;
+  }
+
   //  Modifies the game board according to the Move that is passed in for a certain color.
   /** 
    *  @param m
@@ -230,6 +1262,13 @@ public class MachinePlayer extends Player {
       board.removePiece(m.x2, m.y2);
     }
     board.addPiece(m.x1, m.y1, color);
+    if (accumulator != null) {
+      if (m.moveKind == Move.STEP) {
+        accumulator.remove(m.x2, m.y2, color);
+      }
+      accumulator.add(m.x1, m.y1, color);
+    }
+    pushHistory(board.hash(color == 'W' ? 'B' : 'W'), m.moveKind == Move.STEP);
   }
 
   //  Reverts the game board to its previous state after the board has been modified.
@@ -242,6 +1281,13 @@ public class MachinePlayer extends Player {
       if (m.moveKind == Move.STEP) {
         board.addPiece(m.x2, m.y2, color); 
       }
+      if (accumulator != null) {
+        accumulator.remove(m.x1, m.y1, color);
+        if (m.moveKind == Move.STEP) {
+          accumulator.add(m.x2, m.y2, color);
+        }
+      }
+      popHistory();
     }
 
 
@@ -252,9 +1298,24 @@ public class MachinePlayer extends Player {
    *  @return the Move that is to be made
    */
   public Move chooseMove() {
-      Move m = calcMove(myColor, oppColor, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, null).m;
+      ChooseMoveEvent event = new ChooseMoveEvent();
+      event.begin();
+      Move m = bookMove();
+      boolean fromBook = m != null;
+      if (!fromBook) {
+        m = searchPosition().m;
+      }
       makeMove(m, myColor);
       pieces--;
+      event.end();
+      if (event.shouldCommit()) {
+        event.color = myColor;
+        event.depth = fromBook ? 0 : searchDepth;
+        event.nodes = fromBook ? 0 : nodes;
+        event.move = String.valueOf(m);
+        event.book = fromBook;
+        event.commit();
+      }
       return m;
   }
 
@@ -292,34 +1353,4 @@ public class MachinePlayer extends Player {
       return true;
   }
 
-}
-
-/**
- *  Contains the current Best move and its corresponding score.
- *
- */
-class Best {
-
-  public Move m;
-  public int score;
-
-/**
- *  Creates a Best with a default move of QUIT and a score of zero.
- */
-  public Best() {
-    m = new Move();
-    score = 0;
-  }
-
-/**
- *  Creates a Best with the move passed in and its corresponding score.
- * 
- *  @param m the Move being assigned
- *  @param score the score of the board when this Move is made
- */
-  public Best(Move m, int score) {
-    this.m = m;
-    this.score = score;
-  }
-
 }
\ No newline at end of file
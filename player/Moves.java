@@ -0,0 +1,97 @@
+/* Moves.java */
+
+package player;
+
+/**
+ *  Static helpers for storing and exchanging Moves.  A Move can be packed
+ *  into a single int (for on-disk books and caches) and written as text
+ *  (for logs and engine protocols).
+ *
+ *  The text form is "x,y" for an add, "x2,y2-x1,y1" for a step (from the
+ *  old square to the new one) and "quit" for a quit move.
+ */
+public final class Moves {
+
+  private Moves() {
+  }
+
+  /**
+   *  pack() encodes a Move into an int.  Coordinates take six bits each, so
+   *  boards up to 64 squares wide are representable.
+   *
+   *  @param m the Move to encode.
+   *  @return the packed move.
+   */
+  public static int pack(Move m) {
+    return (m.moveKind << 24) | (m.x1 << 18) | (m.y1 << 12) | (m.x2 << 6) | m.y2;
+  }
+
+  /**
+   *  unpack() decodes an int produced by pack().
+   *
+   *  @param packed the packed move.
+   *  @return a new Move.
+   */
+  public static Move unpack(int packed) {
+    int kind = packed >>> 24;
+    int x1 = (packed >>> 18) & 63;
+    int y1 = (packed >>> 12) & 63;
+    switch (kind) {
+    case Move.ADD:
+      return new Move(x1, y1);
+    case Move.STEP:
+      return new Move(x1, y1, (packed >>> 6) & 63, packed & 63);
+    default:
+      return new Move();
+    }
+  }
+
+  /**
+   *  format() writes a Move in text form.
+   *
+   *  @param m the Move to write.
+   *  @return the text form of m.
+   */
+  public static String format(Move m) {
+    switch (m.moveKind) {
+    case Move.ADD:
+      return m.x1 + "," + m.y1;
+    case Move.STEP:
+      return m.x2 + "," + m.y2 + "-" + m.x1 + "," + m.y1;
+    default:
+      return "quit";
+    }
+  }
+
+  /**
+   *  parse() reads a Move written by format().
+   *
+   *  @param s the text form of a move.
+   *  @return the Move, or null if s is not a well-formed move.
+   */
+  public static Move parse(String s) {
+    s = s.trim();
+    if (s.equals("quit")) {
+      return new Move();
+    }
+    try {
+      int dash = s.indexOf('-');
+      if (dash < 0) {
+        int comma = s.indexOf(',');
+        return new Move(Integer.parseInt(s.substring(0, comma)),
+                        Integer.parseInt(s.substring(comma + 1)));
+      }
+      String from = s.substring(0, dash);
+      String to = s.substring(dash + 1);
+      int c1 = from.indexOf(',');
+      int c2 = to.indexOf(',');
+      return new Move(Integer.parseInt(to.substring(0, c2)),
+                      Integer.parseInt(to.substring(c2 + 1)),
+                      Integer.parseInt(from.substring(0, c1)),
+                      Integer.parseInt(from.substring(c1 + 1)));
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+/* NetworkCheckEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  A Flight Recorder event timing one Board.hasNetwork or Board.connects
+ *  call.  These calls are far too frequent to record individually, so Board
+ *  only times one call in every SAMPLE_PERIOD (a power of two, set with
+ *  -Dnetwork.jfr.sample, default 64).
+ */
+@Name("player.NetworkCheck")
+@Label("Network Check")
+@Category({"Network", "Board"})
+@Description("A sampled call to Board.hasNetwork or Board.connects")
+@StackTrace(false)
+class NetworkCheckEvent extends Event {
+
+  final static int SAMPLE_PERIOD =
+      Integer.highestOneBit(Math.max(1, Integer.getInteger("network.jfr.sample", 64)));
+  final static int SAMPLE_MASK = SAMPLE_PERIOD - 1;
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Color")
+  char color;
+
+  @Label("Result")
+  @Description("1 or 0 for hasNetwork, the connection count for connects")
+  int result;
+
+}
@@ -0,0 +1,323 @@
+/* NetworkDistance.java */
+
+package player;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *  Computes how many more chips a player needs to join its goal areas with
+ *  a network.  A chain starts in the player's first goal area, ends in its
+ *  second, and steps between squares along clear lines as a network does,
+ *  turning at every square.  The chain's own chips cost nothing, empty
+ *  squares cost one chip each and opponent chips cannot be used or passed.
+ *  The chain may not touch either goal area except at its ends, nor the
+ *  opponent's goals or the corners.  A network needs NETWORK_LENGTH chips,
+ *  so a chain of fewer squares also costs a chip for each square it lacks:
+ *  a chain with e empty squares and c own chips costs max(e,
+ *  NETWORK_LENGTH - c), and the distance is the cost of the cheapest chain.
+ *  It is NETWORK_LENGTH on the empty board and 0 when the player has a
+ *  network.  A chain may come back to a square it used, which a network
+ *  may not; it is never credited with more chips than the player has, but
+ *  the distance is a lower bound: 0 usually, but not always, means a
+ *  network.
+ *
+ *  The search is a 0-1 breadth-first search over (square, direction of
+ *  arrival, chain length) states, the length counted up to NETWORK_LENGTH,
+ *  level by level in empty squares.  distance() can also return the
+ *  squares the chosen chain occupies or passes over.  An opponent chip
+ *  added outside them cannot change the distance, since it only removes
+ *  chains and leaves the chosen one intact; MachinePlayer uses this to
+ *  reuse a parent position's distance for most of its children.
+ *
+ *  Each instance owns its work arrays and must not be shared between
+ *  threads.
+ */
+final class NetworkDistance {
+
+  /**
+   *  The distance reported when there is no chain, or one would need more
+   *  chips than this.
+   */
+  final static int MAX = 2 * Board.NETWORK_LENGTH;
+
+  private final static int LENGTHS = Board.NETWORK_LENGTH;
+
+  private final int dim;
+  private final int[] dist;
+  private final int[] from;
+  private final boolean[] done;
+  private int[] current;
+  private int[] next;
+
+  /**
+   *  @param dim the board dimension.
+   */
+  NetworkDistance(int dim) {
+    this.dim = dim;
+    int states = dim * dim * 8 * LENGTHS;
+    dist = new int[states];
+    from = new int[states];
+    done = new boolean[states];
+    current = new int[states];
+    next = new int[states];
+  }
+
+  /**
+   *  dim() returns the board size this instance searches.
+   *
+   *  @return the board dimension.
+   */
+  int dim() {
+    return dim;
+  }
+
+  /**
+   *  distance() computes a player's distance.
+   *
+   *  @param own the player's chips, square (x, y) at bit x * dim + y.
+   *  @param other the opponent's chips.
+   *  @param color the player's color.
+   *  @param path if not null, cleared and then set to the squares of the
+   *         chosen chain and those between them; left empty if there is no
+   *         chain within MAX.
+   *  @return the number of chips needed, from 0 to MAX.
+   */
+  int distance(long[] own, long[] other, char color, long[] path) {
+    boolean black = color == 'B';
+    Arrays.fill(dist, Integer.MAX_VALUE);
+    Arrays.fill(done, false);
+    if (path != null) {
+      Arrays.fill(path, 0);
+    }
+
+    //  States are (square * 8 + d) * LENGTHS + n - 1, where d is the
+    //  direction the chain arrived in and n the number of squares in it, at
+    //  most LENGTHS.  Chains start in the first goal area, where no
+    //  direction applies; they are entered with every direction, which
+    //  allows any first step.  The level is the number of empty squares.  A
+    //  chain reaching the second goal area at level e with n squares costs
+    //  e + LENGTHS - n, or LENGTHS - chips if it counts more chips than the
+    //  player has; once the level reaches the cheapest cost found, or that
+    //  cost is LENGTHS - chips, no later chain can be cheaper.
+    int chips = 0;
+    for (int w = 0; w < own.length; w++) {
+      chips += Long.bitCount(own[w]);
+    }
+    int floor = Math.max(0, LENGTHS - chips);
+    int best = MAX + 1;
+    int bestState = -1;
+    int currentSize = 0;
+    int nextSize = 0;
+    for (int i = 1; i < dim - 1; i++) {
+      int sq = black ? i * dim : i;
+      if (Board.test(other, sq)) {
+        continue;
+      }
+      int cost = Board.test(own, sq) ? 0 : 1;
+      int state = sq * 8 * LENGTHS;
+      dist[state] = cost;
+      from[state] = -1;
+      if (cost == 0) {
+        current[currentSize++] = state;
+      } else {
+        next[nextSize++] = state;
+      }
+    }
+
+    for (int level = 0; level < best && best > floor; level++) {
+      while (currentSize > 0) {
+        int state = current[--currentSize];
+        if (done[state] || dist[state] != level) {
+          continue;
+        }
+        done[state] = true;
+        int sq = state / (8 * LENGTHS);
+        int x0 = sq / dim;
+        int y0 = sq % dim;
+        int length = state % LENGTHS + 1;
+        if (black ? y0 == dim - 1 : x0 == dim - 1) {
+          int cost = Math.max(level + LENGTHS - length, floor);
+          if (cost < best) {
+            best = cost;
+            bestState = state;
+          }
+          if (best <= level) {
+            break;
+          }
+          continue;
+        }
+        boolean start = black ? y0 == 0 : x0 == 0;
+        int arrived = state / LENGTHS & 7;
+        int n = Math.min(length + 1, LENGTHS) - 1;
+        for (int d = 0; d < 8; d++) {
+          if (!start && (d == arrived || d == 7 - arrived)) {
+            continue;
+          }
+          int x = x0 + Board.DX[d];
+          int y = y0 + Board.DY[d];
+          while (x >= 0 && y >= 0 && x < dim && y < dim) {
+            if (black ? x == 0 || x == dim - 1 || y == 0 : y == 0 || y == dim - 1 || x == 0) {
+              break;
+            }
+            int s = x * dim + y;
+            if (Board.test(other, s)) {
+              break;
+            }
+            boolean occupied = Board.test(own, s);
+            int cost = level + (occupied ? 0 : 1);
+            int t = (s * 8 + d) * LENGTHS + n;
+            if (cost < dist[t] && cost < best && !dominated(t - n, n, cost)) {
+              dist[t] = cost;
+              from[t] = state;
+              if (occupied) {
+                current[currentSize++] = t;
+              } else {
+                next[nextSize++] = t;
+              }
+            }
+            if (occupied || (black ? y == dim - 1 : x == dim - 1)) {
+              break;
+            }
+            x += Board.DX[d];
+            y += Board.DY[d];
+          }
+        }
+      }
+      int[] swap = current;
+      current = next;
+      next = swap;
+      currentSize = nextSize;
+      nextSize = 0;
+    }
+    if (path != null && bestState >= 0) {
+      trace(bestState, path);
+    }
+    return Math.min(best, MAX);
+  }
+
+  //  Returns true if a chain has reached a square in the same direction, the
+  //  states from "base" on, with at most "cost" empty squares and no more
+  //  empty squares than this one beyond its n + 1 squares.  It does at least
+  //  as well from there on: every square either chain adds next counts the
+  //  same for both.
+  private boolean dominated(int base, int n, int cost) {
+    for (int k = 0; k < LENGTHS; k++) {
+      int e = dist[base + k];
+      if (e <= cost && e - k <= cost - n) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  //  Sets in "path" the squares of the chain ending in "state" and the
+  //  squares between them.
+  private void trace(int state, long[] path) {
+    int sq = state / (8 * LENGTHS);
+    Board.set(path, sq);
+    for (int prev = from[state]; prev >= 0; prev = from[prev]) {
+      int p = prev / (8 * LENGTHS);
+      int d = state / LENGTHS & 7;
+      for (int s = sq - (Board.DX[d] * dim + Board.DY[d]); s != p;
+           s -= Board.DX[d] * dim + Board.DY[d]) {
+        Board.set(path, s);
+      }
+      Board.set(path, p);
+      state = prev;
+      sq = p;
+    }
+  }
+
+  //  Returns White's distance with white chips on "squares", given as
+  //  x, y pairs, and no black chips.
+  private static int whiteDistance(NetworkDistance nd, int[] squares) {
+    Board board = new Board();
+    for (int i = 0; i < squares.length; i += 2) {
+      board.addPiece(squares[i], squares[i + 1], 'W');
+    }
+    return nd.distance(board.bits('W'), board.bits('B'), 'W', null);
+  }
+
+  private static void expect(String position, int expected, int distance) {
+    if (distance != expected) {
+      System.out.println("MISMATCH: " + position + " has distance " + distance + ", not "
+                         + expected);
+      System.exit(1);
+    }
+  }
+
+  //  Checks known positions, then the reuse rule on random positions: an
+  //  opponent chip added outside the path leaves the distance unchanged,
+  //  and the distance is 0 when there is a network.
+  public static void main(String[] args) {
+    int positions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    Random random = new Random(1);
+    NetworkDistance nd = new NetworkDistance(Board.DIM);
+    int[] network = { 0, 1, 2, 1, 2, 4, 5, 4, 5, 6, 7, 6 };
+    expect("the empty board", Board.NETWORK_LENGTH, whiteDistance(nd, new int[0]));
+    expect("a network", 0, whiteDistance(nd, network));
+    expect("a network missing 7,6", 1,
+           whiteDistance(nd, new int[] { 0, 1, 2, 1, 2, 4, 5, 4, 5, 6 }));
+    expect("a four-chip chain across", 2,
+           whiteDistance(nd, new int[] { 0, 1, 3, 1, 3, 6, 7, 6 }));
+    expect("a four-chip chain with a loop", 2,
+           whiteDistance(nd, new int[] { 0, 1, 3, 1, 3, 4, 7, 4 }));
+    expect("two goal chips", 4, whiteDistance(nd, new int[] { 0, 3, 7, 3 }));
+
+    long[] path = new long[1];
+    long[] black = new long[1];
+    long[] white = new long[1];
+    int reused = 0;
+    int calls = 0;
+    int[] histogram = new int[MAX + 1];
+    long start = System.nanoTime();
+    for (int i = 0; i < positions; i++) {
+      Board board = new Board();
+      int chips = random.nextInt(21);
+      for (int c = 0; c < chips; c++) {
+        int x = random.nextInt(Board.DIM);
+        int y = random.nextInt(Board.DIM);
+        char color = c % 2 == 0 ? 'W' : 'B';
+        if (board.isLegal(x, y, color)) {
+          board.addPiece(x, y, color);
+        }
+      }
+      black[0] = board.bits('B')[0];
+      white[0] = board.bits('W')[0];
+      int d = nd.distance(white, black, 'W', path);
+      calls++;
+      histogram[d]++;
+      if (d != 0 && board.hasNetwork('W')) {
+        System.out.println("MISMATCH: distance " + d + " with a network");
+        board.printBoard();
+        System.exit(1);
+      }
+      int x = random.nextInt(Board.DIM);
+      int y = random.nextInt(Board.DIM);
+      if (!board.isLegal(x, y, 'B') || Board.test(path, x * Board.DIM + y)) {
+        continue;
+      }
+      board.addPiece(x, y, 'B');
+      black[0] = board.bits('B')[0];
+      int after = nd.distance(white, black, 'W', null);
+      calls++;
+      if (after != d) {
+        System.out.println("MISMATCH: distance " + d + " became " + after + " after black "
+                           + x + "," + y);
+        board.printBoard();
+        System.exit(1);
+      }
+      reused++;
+    }
+    long nanos = System.nanoTime() - start;
+    System.out.println(positions + " positions, " + reused + " reuses checked, "
+                       + nanos / calls + " ns per distance");
+    StringBuilder sb = new StringBuilder("distances:");
+    for (int i = 0; i <= MAX; i++) {
+      sb.append(' ').append(i).append(':').append(histogram[i]);
+    }
+    System.out.println(sb);
+  }
+
+}
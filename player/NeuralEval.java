@@ -0,0 +1,246 @@
+/* NeuralEval.java */
+
+package player;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ *  A small quantized evaluation network with an incrementally updated first
+ *  layer, in the style of NNUE.
+ *
+ *  The input has one feature per (color, square), numbered like the Zobrist
+ *  keys: (color == 'W' ? dim * dim : 0) + x * dim + y.  The first layer sums
+ *  the weight columns of the chips on the board into an Accumulator, which
+ *  is kept up to date as chips are added and removed, so a leaf evaluation
+ *  only runs the two small layers after it:
+ *
+ *    h1[i] = clamp(acc[i], 0, 127)
+ *    h2[j] = clamp((b1[j] + sum_i w1[j][i] * h1[i]) >> shift, 0, 127)
+ *    out   = (b2 + sum_j w2[j] * h2[j]) >> shift
+ *
+ *  "out" is the score for White.  All weights are 16-bit integers and the
+ *  accumulator wraps as 16-bit arithmetic does, so adding and removing a
+ *  chip cancel exactly.
+ *
+ *  File layout (big-endian):
+ *    int magic, int dim, int hidden, int hidden2, int shift,
+ *    short[2 * dim * dim][hidden] input weights (one column per feature),
+ *    short[hidden] input biases,
+ *    short[hidden2][hidden] w1, int[hidden2] b1,
+ *    short[hidden2] w2, int b2.
+ *
+ *  A network is immutable once loaded, so one instance may be shared by any
+ *  number of MachinePlayers; each player owns its Accumulator.
+ */
+public class NeuralEval {
+
+  public final static int MAGIC = 0x4E4E4531;  // "NNE1"
+  final static int CLIP = 127;
+
+  private static NeuralEval shared;
+  private static boolean sharedLoaded;
+
+  private final int dim;
+  private final int hidden;
+  private final int hidden2;
+  private final int shift;
+  private final short[] input;
+  private final short[] bias;
+  private final short[] w1;
+  private final int[] b1;
+  private final short[] w2;
+  private final int b2;
+  private final long fingerprint;
+
+  /**
+   *  Loads a network from a file.
+   *
+   *  @param file the weights file.
+   *  @exception IOException if the file cannot be read or is not a network.
+   */
+  public NeuralEval(File file) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not an evaluation network");
+      }
+      dim = in.readInt();
+      hidden = in.readInt();
+      hidden2 = in.readInt();
+      shift = in.readInt();
+      if (dim < Board.MIN_DIM || dim > Board.MAX_DIM || hidden <= 0 || hidden2 <= 0
+          || shift < 0 || shift > 31) {
+        throw new IOException(file + " has a bad header");
+      }
+      input = readShorts(in, 2 * dim * dim * hidden);
+      bias = readShorts(in, hidden);
+      w1 = readShorts(in, hidden2 * hidden);
+      b1 = new int[hidden2];
+      for (int j = 0; j < hidden2; j++) {
+        b1[j] = in.readInt();
+      }
+      w2 = readShorts(in, hidden2);
+      b2 = in.readInt();
+    } finally {
+      in.close();
+    }
+    long h = ((((long) dim * 31 + hidden) * 31 + hidden2) * 31 + shift) * 31 + b2;
+    h = fold(fold(fold(fold(h, input), bias), w1), w2);
+    for (int j = 0; j < hidden2; j++) {
+      h = (h + b1[j]) * 0x9E3779B97F4A7C15L;
+    }
+    fingerprint = h ^ (h >>> 29);
+  }
+
+  private static long fold(long h, short[] a) {
+    for (int i = 0; i < a.length; i++) {
+      h = (h + a[i]) * 0x9E3779B97F4A7C15L;
+    }
+    return h;
+  }
+
+  private static short[] readShorts(DataInputStream in, int n) throws IOException {
+    short[] a = new short[n];
+    for (int i = 0; i < n; i++) {
+      a[i] = in.readShort();
+    }
+    return a;
+  }
+
+  /**
+   *  shared() returns the network named by the "network.eval.weights" system
+   *  property, loading it on first use.  Returns null if no network is
+   *  configured or it cannot be loaded, in which case players use the
+   *  hand-written evaluation.
+   *
+   *  @return the shared network, or null.
+   */
+  public static synchronized NeuralEval shared() {
+    if (!sharedLoaded) {
+      sharedLoaded = true;
+      String path = System.getProperty("network.eval.weights");
+      if (path != null) {
+        try {
+          shared = new NeuralEval(new File(path));
+        } catch (IOException e) {
+          System.err.println("Evaluation network not loaded: " + e.getMessage());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   *  fingerprint() returns a hash of the network's weights, equal for
+   *  networks loaded from equal files.
+   *
+   *  @return the fingerprint.
+   */
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   *  dim() returns the board size the network was trained for.
+   *
+   *  @return the board dimension.
+   */
+  public int dim() {
+    return dim;
+  }
+
+  /**
+   *  accumulator() creates an accumulator holding the first layer for the
+   *  chips now on a board.
+   *
+   *  @param board a board of size dim().
+   *  @return a new Accumulator.
+   */
+  public Accumulator accumulator(Board board) {
+    Accumulator acc = new Accumulator();
+    long[] black = board.bits('B');
+    long[] white = board.bits('W');
+    for (int x = 0; x < dim; x++) {
+      for (int y = 0; y < dim; y++) {
+        if (Board.test(black, x * dim + y)) {
+          acc.add(x, y, 'B');
+        } else if (Board.test(white, x * dim + y)) {
+          acc.add(x, y, 'W');
+        }
+      }
+    }
+    return acc;
+  }
+
+  /**
+   *  The first layer of the network for one board, updated as chips are added
+   *  and removed.  An accumulator must not be shared between threads.
+   */
+  public final class Accumulator {
+
+    private final short[] acc = bias.clone();
+    private final int[] h2 = new int[hidden2];
+
+    private Accumulator() {
+    }
+
+    /**
+     *  add() accounts for a chip placed at (x, y).
+     *
+     *  @param x the x coordinate.
+     *  @param y the y coordinate.
+     *  @param color the color of the chip.
+     */
+    public void add(int x, int y, char color) {
+      int base = ((color == 'W' ? dim * dim : 0) + x * dim + y) * hidden;
+      for (int i = 0; i < hidden; i++) {
+        acc[i] = (short) (acc[i] + input[base + i]);
+      }
+    }
+
+    /**
+     *  remove() accounts for a chip taken off (x, y).
+     *
+     *  @param x the x coordinate.
+     *  @param y the y coordinate.
+     *  @param color the color of the chip.
+     */
+    public void remove(int x, int y, char color) {
+      int base = ((color == 'W' ? dim * dim : 0) + x * dim + y) * hidden;
+      for (int i = 0; i < hidden; i++) {
+        acc[i] = (short) (acc[i] - input[base + i]);
+      }
+    }
+
+    /**
+     *  evaluate() runs the output layers.
+     *
+     *  @return the score of the position for White.
+     */
+    public int evaluate() {
+      for (int j = 0; j < hidden2; j++) {
+        int sum = b1[j];
+        int row = j * hidden;
+        for (int i = 0; i < hidden; i++) {
+          int h = acc[i];
+          h = h < 0 ? 0 : h > CLIP ? CLIP : h;
+          sum += w1[row + i] * h;
+        }
+        sum >>= shift;
+        h2[j] = sum < 0 ? 0 : sum > CLIP ? CLIP : sum;
+      }
+      int out = b2;
+      for (int j = 0; j < hidden2; j++) {
+        out += w2[j] * h2[j];
+      }
+      return out >> shift;
+    }
+
+  }
+
+}
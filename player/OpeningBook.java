@@ -0,0 +1,198 @@
+/* OpeningBook.java */
+
+package player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ *  A read-only opening book, memory-mapped from a file written by
+ *  OpeningBookBuilder.  The book maps position hashes (Board.hash(char)) to
+ *  one or more weighted book moves.
+ *
+ *  File layout (big-endian):
+ *    int magic, int dim, int count,
+ *    then count entries of { long key, int packed move, int weight },
+ *    sorted by key.  Entries with equal keys are adjacent.
+ *
+ *  A book is immutable once opened, so one instance may be shared by any
+ *  number of MachinePlayers.
+ */
+public class OpeningBook {
+
+  public final static int MAGIC = 0x4E424B31;  // "NBK1"
+  final static int HEADER = 12;
+  final static int ENTRY = 16;
+
+  /**
+   *  Selection modes for probe().  BEST always plays the heaviest move,
+   *  WEIGHTED picks with probability proportional to weight and UNIFORM
+   *  picks any book move with equal probability.
+   */
+  public final static int BEST = 0;
+  public final static int WEIGHTED = 1;
+  public final static int UNIFORM = 2;
+
+  private static OpeningBook shared;
+  private static boolean sharedLoaded;
+
+  private final MappedByteBuffer buf;
+  private final int count;
+  private final int dim;
+  private int select = WEIGHTED;
+
+  /**
+   *  Maps the book stored in a file.
+   *
+   *  @param file the book file.
+   *  @exception IOException if the file cannot be read or is not a book.
+   */
+  public OpeningBook(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    } finally {
+      raf.close();
+    }
+    if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC) {
+      throw new IOException(file + " is not an opening book");
+    }
+    dim = buf.getInt(4);
+    count = buf.getInt(8);
+    if (buf.capacity() < HEADER + (long) count * ENTRY) {
+      throw new IOException(file + " is truncated");
+    }
+  }
+
+  /**
+   *  shared() returns the book named by the "network.book" system property,
+   *  loading it on first use.  Returns null if no book is configured or it
+   *  cannot be loaded.  The "network.book.select" property ("best",
+   *  "weighted" or "uniform") sets the selection mode.
+   *
+   *  @return the shared book, or null.
+   */
+  public static synchronized OpeningBook shared() {
+    if (!sharedLoaded) {
+      sharedLoaded = true;
+      String path = System.getProperty("network.book");
+      if (path != null) {
+        try {
+          shared = new OpeningBook(new File(path));
+          String select = System.getProperty("network.book.select", "weighted");
+          if (select.equals("best")) {
+            shared.setSelection(BEST);
+          } else if (select.equals("uniform")) {
+            shared.setSelection(UNIFORM);
+          }
+        } catch (IOException e) {
+          System.err.println("Opening book not loaded: " + e.getMessage());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   *  setSelection() sets how probe() chooses among several book moves.
+   *
+   *  @param select one of BEST, WEIGHTED or UNIFORM.
+   */
+  public void setSelection(int select) {
+    this.select = select;
+  }
+
+  /**
+   *  size() returns the number of entries in the book.
+   *
+   *  @return the number of (position, move) entries.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   *  dim() returns the board size the book was built for.
+   *
+   *  @return the board dimension.
+   */
+  public int dim() {
+    return dim;
+  }
+
+  /**
+   *  probe() looks up a position and returns one of its book moves, chosen
+   *  according to the selection mode.
+   *
+   *  @param key the position hash, from Board.hash(char).
+   *  @param random the source of randomness for WEIGHTED and UNIFORM.
+   *  @return a book move, or null if the position is not in the book.
+   *
+   *  Performance:  runs in O(log n) time.
+   */
+  public Move probe(long key, Random random) {
+    int first = find(key);
+    if (first < 0) {
+      return null;
+    }
+    int last = first;
+    int total = weight(first);
+    int best = first;
+    while (last + 1 < count && key(last + 1) == key) {
+      last++;
+      total += weight(last);
+      if (weight(last) > weight(best)) {
+        best = last;
+      }
+    }
+    int pick = best;
+    if (select == UNIFORM) {
+      pick = first + random.nextInt(last - first + 1);
+    } else if (select == WEIGHTED && total > 0) {
+      int r = random.nextInt(total);
+      for (pick = first; pick < last; pick++) {
+        r -= weight(pick);
+        if (r < 0) {
+          break;
+        }
+      }
+    }
+    return Moves.unpack(buf.getInt(HEADER + pick * ENTRY + 8));
+  }
+
+  /**
+   *  find() binary searches for the first entry with the given key.
+   *
+   *  @param key the key being sought.
+   *  @return the index of the first matching entry, or -1 if there is none.
+   */
+  private int find(long key) {
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (key(mid) < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    if (lo < count && key(lo) == key) {
+      return lo;
+    }
+    return -1;
+  }
+
+  private long key(int i) {
+    return buf.getLong(HEADER + i * ENTRY);
+  }
+
+  private int weight(int i) {
+    return buf.getInt(HEADER + i * ENTRY + 12);
+  }
+
+}
@@ -0,0 +1,163 @@
+/* OpeningBookBuilder.java */
+
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import list.*;
+
+/**
+ *  Builds an OpeningBook offline by searching every position reachable
+ *  through the top book moves of the first few plies.
+ *
+ *  Usage:  java player.OpeningBookBuilder book-file [plies [top [depth]]]
+ *
+ *  Every root move of a position is scored with a full-width search of the
+ *  given depth; the best "top" moves enter the book with weights
+ *  top, top - 1, ..., 1 and are expanded to the next ply.
+ */
+public class OpeningBookBuilder {
+
+  private final int plies;
+  private final int top;
+  private final int depth;
+
+  private final ArrayList<long[]> entries = new ArrayList<long[]>();
+  private final HashSet<Long> seen = new HashSet<Long>();
+
+  /**
+   *  @param plies the number of plies covered by the book.
+   *  @param top the number of moves kept per position.
+   *  @param depth the search depth used to score moves.
+   */
+  public OpeningBookBuilder(int plies, int top, int depth) {
+    this.plies = plies;
+    this.top = top;
+    this.depth = depth;
+  }
+
+  /**
+   *  build() searches from the empty board and collects book entries.
+   */
+  public void build() {
+    expand(new ArrayList<Move>());
+  }
+
+  //  Scores the position reached by "line", records its best moves and
+  //  recurses into each of them.
+  private void expand(ArrayList<Move> line) {
+    if (line.size() >= plies) {
+      return;
+    }
+    int color = line.size() % 2 == 0 ? 1 : 0;
+    MachinePlayer player = replay(line, color);
+    long key = player.positionKey();
+    if (!seen.add(Long.valueOf(key))) {
+      player.close();
+      return;
+    }
+
+    DList moves = player.listMoves(player.color());
+    Move[] best = new Move[top];
+    int[] scores = new int[top];
+    int found = 0;
+    try {
+      for (ListNode n = moves.front(); n.isValidNode(); n = n.next()) {
+        Move m = (Move) n.item();
+        int score = player.scoreMove(m);
+        int i = found < top ? found++ : top;
+        while (i > 0 && scores[i - 1] < score) {
+          if (i < top) {
+            best[i] = best[i - 1];
+            scores[i] = scores[i - 1];
+          }
+          i--;
+        }
+        if (i < top) {
+          best[i] = m;
+          scores[i] = score;
+        }
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    } finally {
+      player.close();
+    }
+
+    for (int i = 0; i < found; i++) {
+      entries.add(new long[] {key, Moves.pack(best[i]), found - i});
+    }
+    System.out.println("ply " + line.size() + " " + line + " -> " + found + " moves");
+    for (int i = 0; i < found; i++) {
+      line.add(best[i]);
+      expand(line);
+      line.remove(line.size() - 1);
+    }
+  }
+
+  //  Creates a player of the given color and plays "line" onto its board.
+  private MachinePlayer replay(ArrayList<Move> line, int color) {
+    MachinePlayer player = new MachinePlayer(color, depth);
+    for (int i = 0; i < line.size(); i++) {
+      boolean mine = (i % 2 == 0) == (color == 1);
+      if (mine) {
+        player.forceMove(line.get(i));
+      } else {
+        player.opponentMove(line.get(i));
+      }
+    }
+    return player;
+  }
+
+  /**
+   *  write() stores the collected entries as a book file.
+   *
+   *  @param path the file to write.
+   *  @exception IOException if the file cannot be written.
+   */
+  public void write(String path) throws IOException {
+    long[][] sorted = entries.toArray(new long[entries.size()][]);
+    java.util.Arrays.sort(sorted, new java.util.Comparator<long[]>() {
+      public int compare(long[] a, long[] b) {
+        if (a[0] != b[0]) {
+          return a[0] < b[0] ? -1 : 1;
+        }
+        return (int) (b[2] - a[2]);
+      }
+    });
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(path)));
+    try {
+      out.writeInt(OpeningBook.MAGIC);
+      out.writeInt(Board.DIM);
+      out.writeInt(sorted.length);
+      for (int i = 0; i < sorted.length; i++) {
+        out.writeLong(sorted[i][0]);
+        out.writeInt((int) sorted[i][1]);
+        out.writeInt((int) sorted[i][2]);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: java player.OpeningBookBuilder book-file [plies [top [depth]]]");
+      System.exit(1);
+    }
+    int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int top = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    int depth = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+    OpeningBookBuilder builder = new OpeningBookBuilder(plies, top, depth);
+    builder.build();
+    builder.write(args[0]);
+    System.out.println(builder.entries.size() + " entries written to " + args[0]);
+  }
+
+}
@@ -0,0 +1,213 @@
+/* Perft.java */
+
+package player;
+
+import java.util.ArrayList;
+
+import list.*;
+
+/**
+ *  Counts the leaves of the tree of legal moves to a fixed depth, to check
+ *  and time move generation.
+ *
+ *  Usage:  java player.Perft depth [divide] [verify] [dim n] [moves m1 m2 ...]
+ *
+ *  The tree starts from the empty board, or from the position after the
+ *  given moves (white plays m1; moves are written as in Moves.format).
+ *  Each player adds chips until it has placed chipsFor(dim) of them and
+ *  steps afterwards.  Networks do not end the game here, so the counts
+ *  measure move generation alone.
+ *
+ *    divide   prints the count below each root move
+ *    verify   compares listMoves with listMovesByNeighbors, move by move,
+ *             at every node and stops at the first difference
+ *
+ *  The last line gives the leaf count, the time and the leaves per second.
+ */
+public class Perft {
+
+  private final MachinePlayer player;
+  private final int chips;
+  private final boolean verify;
+  private final int[] placed = new int[2];  // by black (0) and white (1)
+  private final ArrayList<Move> line = new ArrayList<Move>();
+  private char toMove = 'W';
+
+  /**
+   *  @param dim the board dimension.
+   *  @param verify true to check listMoves against the reference at every node.
+   */
+  public Perft(int dim, boolean verify) {
+    player = new MachinePlayer(1, 1, dim);
+    chips = MachinePlayer.chipsFor(dim);
+    this.verify = verify;
+  }
+
+  /**
+   *  play() makes a move for the side to move.
+   *
+   *  @param m the move.
+   *  @return false if the move is not among the legal moves.
+   */
+  public boolean play(Move m) {
+    DList moves = generate();
+    try {
+      for (ListNode n = moves.front(); n.isValidNode(); n = n.next()) {
+        if (Moves.format((Move) n.item()).equals(Moves.format(m))) {
+          make(m);
+          return true;
+        }
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    }
+    return false;
+  }
+
+  /**
+   *  perft() counts the leaves at a given depth below the current position.
+   *
+   *  @param depth the number of plies.
+   *  @return the number of move sequences of that length.
+   */
+  public long perft(int depth) {
+    if (depth == 0) {
+      return 1;
+    }
+    DList moves = generate();
+    if (depth == 1) {
+      return moves.length();
+    }
+    long count = 0;
+    try {
+      for (ListNode n = moves.front(); n.isValidNode(); n = n.next()) {
+        Move m = (Move) n.item();
+        make(m);
+        count += perft(depth - 1);
+        unmake(m);
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    }
+    return count;
+  }
+
+  /**
+   *  divide() prints the leaf count below each root move.
+   *
+   *  @param depth the number of plies, at least 1.
+   *  @return the total number of leaves.
+   */
+  public long divide(int depth) {
+    DList moves = generate();
+    long total = 0;
+    try {
+      for (ListNode n = moves.front(); n.isValidNode(); n = n.next()) {
+        Move m = (Move) n.item();
+        make(m);
+        long count = perft(depth - 1);
+        unmake(m);
+        System.out.println(Moves.format(m) + ": " + count);
+        total += count;
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    }
+    return total;
+  }
+
+  //  Lists the moves of the side to move, checking them against the
+  //  reference generator in verify mode.
+  private DList generate() {
+    boolean add = placed[toMove == 'W' ? 1 : 0] < chips;
+    DList moves = player.listMoves(toMove, add);
+    if (verify) {
+      String fast = format(moves);
+      String slow = format(player.listMovesByNeighbors(toMove, add));
+      if (!fast.equals(slow)) {
+        System.out.println("MISMATCH after moves " + format(line));
+        System.out.println("  listMoves:            " + fast);
+        System.out.println("  listMovesByNeighbors: " + slow);
+        System.exit(1);
+      }
+    }
+    return moves;
+  }
+
+  private void make(Move m) {
+    player.makeMove(m, toMove);
+    if (m.moveKind == Move.ADD) {
+      placed[toMove == 'W' ? 1 : 0]++;
+    }
+    line.add(m);
+    toMove = toMove == 'W' ? 'B' : 'W';
+  }
+
+  private void unmake(Move m) {
+    toMove = toMove == 'W' ? 'B' : 'W';
+    line.remove(line.size() - 1);
+    if (m.moveKind == Move.ADD) {
+      placed[toMove == 'W' ? 1 : 0]--;
+    }
+    player.unMove(m, toMove);
+  }
+
+  private static String format(DList moves) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      for (ListNode n = moves.front(); n.isValidNode(); n = n.next()) {
+        sb.append(Moves.format((Move) n.item())).append(' ');
+      }
+    } catch (InvalidNodeException e) {
+      // Iteration stopped at the end of the list.
+    }
+    return sb.toString().trim();
+  }
+
+  private static String format(ArrayList<Move> moves) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < moves.size(); i++) {
+      sb.append(Moves.format(moves.get(i))).append(' ');
+    }
+    return sb.length() == 0 ? "(none)" : sb.toString().trim();
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.err.println("usage: java player.Perft depth [divide] [verify] [dim n] [moves m1 m2 ...]");
+      System.exit(1);
+    }
+    int depth = Integer.parseInt(args[0]);
+    boolean divide = false;
+    boolean verify = false;
+    int dim = Board.DIM;
+    int i = 1;
+    for (; i < args.length && !args[i].equals("moves"); i++) {
+      if (args[i].equals("divide")) {
+        divide = true;
+      } else if (args[i].equals("verify")) {
+        verify = true;
+      } else if (args[i].equals("dim") && i + 1 < args.length) {
+        dim = Integer.parseInt(args[++i]);
+      } else {
+        System.err.println("unknown option " + args[i]);
+        System.exit(1);
+      }
+    }
+    Perft perft = new Perft(dim, verify);
+    for (i++; i < args.length; i++) {
+      Move m = Moves.parse(args[i]);
+      if (m == null || !perft.play(m)) {
+        System.err.println("illegal move " + args[i]);
+        System.exit(1);
+      }
+    }
+
+    long start = System.nanoTime();
+    long count = divide && depth > 0 ? perft.divide(depth) : perft.perft(depth);
+    long nanos = Math.max(1, System.nanoTime() - start);
+    System.out.println("perft " + depth + ": " + count + " leaves in " + nanos / 1000000 + " ms, "
+                       + (long) (count * 1e9 / nanos) + " leaves/s" + (verify ? ", verified" : ""));
+  }
+
+}
@@ -0,0 +1,117 @@
+/* Position.java */
+
+package player;
+
+/**
+ *  An immutable description of a game position: the contents of every
+ *  square and the color of the player to move.  Positions carry no search
+ *  state, so they can be handed between threads freely.
+ */
+public class Position {
+
+  private final char[][] cells;
+  private final char toMove;
+
+  /**
+   *  @param cells cells[x][y] is 'B', 'W', or any other char for an empty
+   *         square.  The array must be square, and is copied.
+   *  @param toMove the color of the player to move, 'B' or 'W'.
+   */
+  public Position(char[][] cells, char toMove) {
+    int dim = cells.length;
+    this.cells = new char[dim][dim];
+    for (int x = 0; x < dim; x++) {
+      for (int y = 0; y < dim; y++) {
+        char c = cells[x][y];
+        this.cells[x][y] = (c == 'B' || c == 'W') ? c : ' ';
+      }
+    }
+    this.toMove = toMove;
+  }
+
+  /**
+   *  gamePositions() returns the position before each move of a game on the
+   *  standard board, plus the final position.
+   *
+   *  @param moves the moves of the game, in order.
+   *  @return moves.length + 1 positions.
+   */
+  public static Position[] gamePositions(Move[] moves) {
+    return gamePositions(moves, Board.DIM);
+  }
+
+  /**
+   *  gamePositions() returns the position before each move of a game, plus
+   *  the final position.  White moves first.  The moves are assumed legal.
+   *
+   *  @param moves the moves of the game, in order.
+   *  @param dim the board dimension.
+   *  @return moves.length + 1 positions.
+   */
+  public static Position[] gamePositions(Move[] moves, int dim) {
+    char[][] cells = new char[dim][dim];
+    Position[] positions = new Position[moves.length + 1];
+    char color = 'W';
+    for (int i = 0; i <= moves.length; i++) {
+      positions[i] = new Position(cells, color);
+      if (i == moves.length) {
+        break;
+      }
+      Move m = moves[i];
+      if (m.moveKind == Move.STEP) {
+        cells[m.x2][m.y2] = ' ';
+      }
+      if (m.moveKind != Move.QUIT) {
+        cells[m.x1][m.y1] = color;
+      }
+      color = color == 'W' ? 'B' : 'W';
+    }
+    return positions;
+  }
+
+  /**
+   *  dim() returns the number of squares along each side of the board.
+   *
+   *  @return the board dimension.
+   */
+  public int dim() {
+    return cells.length;
+  }
+
+  /**
+   *  get() returns the contents of square (x, y).
+   *
+   *  @return 'B', 'W', or ' ' if the square is empty.
+   */
+  public char get(int x, int y) {
+    return cells[x][y];
+  }
+
+  /**
+   *  toMove() returns the color of the player to move.
+   *
+   *  @return 'B' or 'W'.
+   */
+  public char toMove() {
+    return toMove;
+  }
+
+  /**
+   *  count() returns the number of chips of a color on the board.
+   *
+   *  @param color 'B' or 'W'.
+   *  @return the number of chips of that color.
+   */
+  public int count(char color) {
+    int n = 0;
+    for (int x = 0; x < cells.length; x++) {
+      for (int y = 0; y < cells.length; y++) {
+        if (cells[x][y] == color) {
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+}
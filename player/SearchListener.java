@@ -0,0 +1,15 @@
+/* SearchListener.java */
+
+package player;
+
+/**
+ *  Receives progress reports from MachinePlayer.searchIterative, once per
+ *  completed depth.  Called on the searching thread.
+ */
+public interface SearchListener {
+
+  // A search to "depth" finished with the given best score and principal
+  // variation, after "nodes" nodes and "millis" milliseconds in total.
+  void depthDone(int depth, int score, long nodes, long millis, Move[] pv);
+
+}
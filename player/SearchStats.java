@@ -0,0 +1,257 @@
+/* SearchStats.java */
+
+package player;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+/**
+ *  Counters describing the work done by one MachinePlayer's searches.
+ *
+ *  Collection is switched on with -Dnetwork.stats=true.  ENABLED is a static
+ *  final constant, so when it is false the JIT removes every guarded call
+ *  and the search pays nothing.  When enabled, each finished search is
+ *  published through JMX (player:type=SearchStats,name=...) and as one
+ *  key=value line on the "player.search" logger.
+ *
+ *  Counters are updated by the searching thread only.  end() copies them
+ *  into the fields read by JMX, so readers always see a finished search.
+ */
+public class SearchStats implements SearchStatsMXBean {
+
+  public final static boolean ENABLED = Boolean.getBoolean("network.stats");
+
+  final static int MAX_PLY = 32;
+  final static int MAX_INDEX = 64;
+
+  private final static Logger LOG = Logger.getLogger("player.search");
+
+  private final String name;
+
+  // Counters for the search in progress.
+  private long leaves;
+  private long networkChecks;
+  private long[] cutoffs = new long[MAX_INDEX];
+  private long[] plyNodes = new long[MAX_PLY];
+  private double[] depthMillis = new double[MAX_PLY];
+  private long start;
+  private long depthStart;
+
+  // Results of the last finished search.
+  private volatile long searches;
+  private volatile long totalNodes;
+  private volatile Counters last = new Counters();
+
+  /**
+   *  @param name a name for the owning player, unique within the JVM.
+   */
+  SearchStats(String name) {
+    this.name = name;
+  }
+
+  /**
+   *  register() publishes these statistics on the platform MBean server.
+   *  Failures are logged and otherwise ignored.
+   */
+  void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+          new ObjectName("player:type=SearchStats,name=" + name));
+    } catch (Exception e) {
+      LOG.log(Level.WARNING, "could not register search statistics", e);
+    }
+  }
+
+  /**
+   *  unregister() removes these statistics from the platform MBean server.
+   */
+  void unregister() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+          new ObjectName("player:type=SearchStats,name=" + name));
+    } catch (Exception e) {
+      // Never registered, or already removed.
+    }
+  }
+
+  /**
+   *  begin() resets the counters at the start of a search.
+   */
+  void begin() {
+    leaves = 0;
+    networkChecks = 0;
+    java.util.Arrays.fill(cutoffs, 0);
+    java.util.Arrays.fill(plyNodes, 0);
+    java.util.Arrays.fill(depthMillis, 0);
+    start = System.nanoTime();
+    depthStart = start;
+  }
+
+  /**
+   *  node() counts a node visited at the given ply.
+   */
+  void node(int ply) {
+    if (ply < MAX_PLY) {
+      plyNodes[ply]++;
+    }
+  }
+
+  /**
+   *  leaf() counts a static evaluation.
+   */
+  void leaf() {
+    leaves++;
+  }
+
+  /**
+   *  networkCheck() counts calls to Board.hasNetwork.
+   */
+  void networkCheck(int calls) {
+    networkChecks += calls;
+  }
+
+  /**
+   *  cutoff() counts a beta cutoff caused by the index-th move tried.
+   */
+  void cutoff(int index) {
+    cutoffs[index < MAX_INDEX ? index : MAX_INDEX - 1]++;
+  }
+
+  /**
+   *  depthDone() records the time spent on a completed search depth.
+   */
+  void depthDone(int depth) {
+    long now = System.nanoTime();
+    if (depth < MAX_PLY) {
+      depthMillis[depth] += (now - depthStart) / 1e6;
+    }
+    depthStart = now;
+  }
+
+  /**
+   *  end() publishes the counters of the finished search and logs them.
+   *
+   *  @param depth the depth searched.
+   *  @param nodes the number of nodes visited.
+   */
+  void end(int depth, long nodes) {
+    Counters s = new Counters();
+    s.depth = depth;
+    s.nodes = nodes;
+    s.leaves = leaves;
+    s.networkChecks = networkChecks;
+    s.elapsedMillis = (System.nanoTime() - start) / 1e6;
+    int lastIndex = MAX_INDEX;
+    while (lastIndex > 0 && cutoffs[lastIndex - 1] == 0) {
+      lastIndex--;
+    }
+    s.cutoffs = java.util.Arrays.copyOf(cutoffs, lastIndex);
+    int plies = 0;
+    while (plies < MAX_PLY && plyNodes[plies] != 0) {
+      plies++;
+    }
+    s.branching = new double[Math.max(plies - 1, 0)];
+    for (int i = 0; i < s.branching.length; i++) {
+      s.branching[i] = (double) plyNodes[i + 1] / plyNodes[i];
+    }
+    s.depthMillis = java.util.Arrays.copyOf(depthMillis, depth + 1);
+    last = s;
+    searches++;
+    totalNodes += nodes;
+    if (LOG.isLoggable(Level.INFO)) {
+      LOG.info(toLogLine());
+    }
+  }
+
+  /**
+   *  toLogLine() formats the last search as a single key=value line.
+   *
+   *  @return a structured description of the last search.
+   */
+  public String toLogLine() {
+    Counters s = last;
+    return "search player=" + name + " depth=" + s.depth + " nodes=" + s.nodes
+        + " leaves=" + s.leaves + " netchecks=" + s.networkChecks
+        + " cutoffs=" + java.util.Arrays.toString(s.cutoffs).replace(" ", "")
+        + " ebf=" + format(s.branching)
+        + " ms_by_depth=" + format(s.depthMillis)
+        + " ms=" + Math.round(s.elapsedMillis) + " nps=" + s.nps();
+  }
+
+  private static String format(double[] a) {
+    StringBuilder b = new StringBuilder("[");
+    for (int i = 0; i < a.length; i++) {
+      if (i > 0) {
+        b.append(',');
+      }
+      b.append(Math.round(a[i] * 10) / 10.0);
+    }
+    return b.append(']').toString();
+  }
+
+  public long getSearches() {
+    return searches;
+  }
+
+  public long getTotalNodes() {
+    return totalNodes;
+  }
+
+  public int getDepth() {
+    return last.depth;
+  }
+
+  public long getNodes() {
+    return last.nodes;
+  }
+
+  public long getLeafEvaluations() {
+    return last.leaves;
+  }
+
+  public long getNetworkChecks() {
+    return last.networkChecks;
+  }
+
+  public long[] getCutoffsByMoveIndex() {
+    return last.cutoffs.clone();
+  }
+
+  public double[] getBranchingFactors() {
+    return last.branching.clone();
+  }
+
+  public double[] getMillisByDepth() {
+    return last.depthMillis.clone();
+  }
+
+  public double getElapsedMillis() {
+    return last.elapsedMillis;
+  }
+
+  public long getNodesPerSecond() {
+    return last.nps();
+  }
+
+  /**
+   *  The immutable record of one finished search.
+   */
+  private static class Counters {
+    int depth;
+    long nodes;
+    long leaves;
+    long networkChecks;
+    long[] cutoffs = new long[0];
+    double[] branching = new double[0];
+    double[] depthMillis = new double[0];
+    double elapsedMillis;
+
+    long nps() {
+      return elapsedMillis > 0 ? (long) (nodes * 1000 / elapsedMillis) : 0;
+    }
+  }
+
+}
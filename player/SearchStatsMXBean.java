@@ -0,0 +1,39 @@
+/* SearchStatsMXBean.java */
+
+package player;
+
+/**
+ *  The JMX view of a MachinePlayer's SearchStats.  All values describe the
+ *  most recently completed search unless noted otherwise.
+ */
+public interface SearchStatsMXBean {
+
+  // The number of completed searches since the player was created.
+  long getSearches();
+
+  // Nodes visited by all searches since the player was created.
+  long getTotalNodes();
+
+  // The depth of the last search.
+  int getDepth();
+
+  long getNodes();
+
+  long getLeafEvaluations();
+
+  long getNetworkChecks();
+
+  // Beta cutoffs indexed by the position of the cutting move in its move list.
+  long[] getCutoffsByMoveIndex();
+
+  // Nodes at ply i + 1 divided by nodes at ply i.
+  double[] getBranchingFactors();
+
+  // Milliseconds spent on each search depth, indexed by depth.
+  double[] getMillisByDepth();
+
+  double getElapsedMillis();
+
+  long getNodesPerSecond();
+
+}
@@ -0,0 +1,196 @@
+/* SearchTrace.java */
+
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ *  Writes every node a MachinePlayer's searches visit to a gzip-compressed
+ *  file, for inspecting a search after the fact with SearchTraceReader.
+ *
+ *  Tracing is switched on with -Dnetwork.trace=prefix: each player then
+ *  writes its searches to prefix-C-n.trace.gz, C being its color and n a
+ *  number unique within the JVM.  Records are written as the search runs,
+ *  through fixed-size buffers, so the size of a search is limited only by
+ *  the disk.  The stream is flushed at the end of each search, so a trace
+ *  is readable up to the last finished search even if the player is never
+ *  closed.
+ *
+ *  File layout (big-endian, after decompression):
+ *    int magic, then records, each starting with a one-byte tag:
+ *    SEARCH  long position key, byte color to move, byte search depth
+ *    ENTER   byte depth, int move, int alpha, int beta
+ *    EXIT    int score, byte flags (CUTOFF)
+ *    END     int best move, int score, long nodes
+ *  A search is SEARCH, the nested ENTER ... EXIT pairs of its nodes, and
+ *  END.  A node's move is the move that led to it, packed as by
+ *  AnalysisCache.packMove, or -1 for the root.  Alpha and beta are the
+ *  window on entry.
+ */
+public class SearchTrace {
+
+  public final static int MAGIC = 0x4E535431;  // "NST1"
+  public final static String PREFIX = System.getProperty("network.trace");
+
+  final static int SEARCH = 'S';
+  final static int ENTER = 'E';
+  final static int EXIT = 'X';
+  final static int END = 'D';
+
+  /**
+   *  Flag of an EXIT record: the node stopped searching its moves because
+   *  alpha reached beta.
+   */
+  public final static int CUTOFF = 1;
+
+  private final File file;
+  private DataOutputStream out;
+
+  /**
+   *  Creates a trace file, replacing any file of the same name.
+   *
+   *  @param file the file to write.
+   *  @exception IOException if the file cannot be created.
+   */
+  public SearchTrace(File file) throws IOException {
+    this.file = file;
+    out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(file), 1 << 16, true), 1 << 16));
+    out.writeInt(MAGIC);
+  }
+
+  /**
+   *  create() opens the trace of a player when tracing is switched on.
+   *
+   *  @param name a name for the player, unique within the JVM.
+   *  @return the trace, or null if tracing is off or the file cannot be
+   *          created.
+   */
+  static SearchTrace create(String name) {
+    if (PREFIX == null) {
+      return null;
+    }
+    try {
+      return new SearchTrace(new File(PREFIX + "-" + name + ".trace.gz"));
+    } catch (IOException e) {
+      System.err.println("Search trace not written: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   *  begin() starts the record of a search.
+   *
+   *  @param key the position key of the root.
+   *  @param color the color to move at the root.
+   *  @param depth the search depth.
+   */
+  void begin(long key, char color, int depth) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.writeByte(SEARCH);
+      out.writeLong(key);
+      out.writeByte(color);
+      out.writeByte(depth);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   *  enter() records a node as the search enters it.
+   *
+   *  @param depth the depth of the node.
+   *  @param move the move that led to the node, or null at the root.
+   *  @param alpha alpha on entry.
+   *  @param beta beta on entry.
+   */
+  void enter(int depth, Move move, int alpha, int beta) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.writeByte(ENTER);
+      out.writeByte(depth);
+      out.writeInt(move == null ? -1 : AnalysisCache.packMove(move));
+      out.writeInt(alpha);
+      out.writeInt(beta);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   *  exit() records the result of the node entered last and not yet exited.
+   *
+   *  @param score the node's score.
+   *  @param cutoff true if the node was cut off.
+   */
+  void exit(int score, boolean cutoff) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.writeByte(EXIT);
+      out.writeInt(score);
+      out.writeByte(cutoff ? CUTOFF : 0);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   *  end() finishes the record of a search and flushes the file.
+   *
+   *  @param best the result of the search, or null.
+   *  @param nodes the number of nodes searched.
+   */
+  void end(Best best, long nodes) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.writeByte(END);
+      out.writeInt(best == null || best.m == null ? -1 : AnalysisCache.packMove(best.m));
+      out.writeInt(best == null ? 0 : best.score);
+      out.writeLong(nodes);
+      out.flush();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   *  close() finishes the file.
+   */
+  void close() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      // Everything up to the last flush is already on disk.
+    }
+    out = null;
+  }
+
+  //  Reports a write error and stops tracing.
+  private void fail(IOException e) {
+    System.err.println("Search trace " + file + " stopped: " + e.getMessage());
+    try {
+      out.close();
+    } catch (IOException e2) {
+      // Already reported.
+    }
+    out = null;
+  }
+
+}
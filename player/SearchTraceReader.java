@@ -0,0 +1,258 @@
+/* SearchTraceReader.java */
+
+package player;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ *  Reads the files written by SearchTrace.
+ *
+ *  Usage:  java player.SearchTraceReader trace-file [search n [move m] [depth d]]
+ *
+ *  Without "search", lists the searches in the file with their depth, node
+ *  count, best move and score.  With "search n", prints the tree of the
+ *  n-th search (counting from 1), or with "move m" only the subtree below
+ *  the root move m, to d plies below its top (default 2).  Each node is
+ *  printed as its move, the window it was entered with, and its score,
+ *  marked "cutoff" if it stopped at a beta cutoff.  A node whose children
+ *  are printed gets its score on a line of its own after them.
+ *
+ *  The file is read as a stream and only the nodes on the current path are
+ *  kept, so searches of any size can be read.
+ */
+public class SearchTraceReader {
+
+  final static int DEFAULT_DEPTH = 2;
+
+  private final DataInputStream in;
+  private final PrintStream out;
+
+  /**
+   *  @param file a trace file.
+   *  @param out the stream the listing is printed to.
+   *  @exception IOException if the file cannot be read or is not a trace.
+   */
+  public SearchTraceReader(File file, PrintStream out) throws IOException {
+    this.out = out;
+    in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(new FileInputStream(file), 1 << 16), 1 << 16));
+    if (in.readInt() != SearchTrace.MAGIC) {
+      in.close();
+      throw new IOException(file + " is not a search trace");
+    }
+  }
+
+  /**
+   *  list() prints one line per search.
+   *
+   *  @return the number of searches.
+   *  @exception IOException if the file cannot be read.
+   */
+  public int list() throws IOException {
+    int searches = 0;
+    try {
+      while (true) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+        case SearchTrace.SEARCH:
+          searches++;
+          long key = in.readLong();
+          char color = (char) in.readUnsignedByte();
+          int depth = in.readUnsignedByte();
+          out.print("search " + searches + ": " + color + " to move, key "
+                    + Long.toHexString(key) + ", depth " + depth);
+          break;
+        case SearchTrace.ENTER:
+          in.skipBytes(13);
+          break;
+        case SearchTrace.EXIT:
+          in.skipBytes(5);
+          break;
+        case SearchTrace.END:
+          String best = format(in.readInt());
+          int score = in.readInt();
+          long nodes = in.readLong();
+          out.println(", " + nodes + " nodes, best " + best + " score " + score);
+          break;
+        default:
+          throw new IOException("bad record tag " + tag);
+        }
+      }
+    } catch (EOFException e) {
+      // The end of the file, or of the part flushed so far.
+    }
+    return searches;
+  }
+
+  /**
+   *  print() prints part of the tree of one search.
+   *
+   *  @param search the search, counting from 1.
+   *  @param move the root move whose subtree is printed, or null for the
+   *         whole tree.
+   *  @param maxDepth the number of plies printed below the top node.
+   *  @return the number of nodes in the printed tree, including those too
+   *          deep to print, or -1 if the search or move was not found.
+   *  @exception IOException if the file cannot be read.
+   */
+  public long print(int search, Move move, int maxDepth) throws IOException {
+    int target = move == null ? -1 : AnalysisCache.packMove(move);
+    int[] moves = new int[256];
+    int[] alphas = new int[256];
+    int[] betas = new int[256];
+    int searches = 0;
+    int top = -1;        // depth of the printed tree's top node, once entered
+    int pending = -1;    // depth of a node whose line is not yet printed
+    int depth = -1;
+    long count = -1;
+    try {
+      while (true) {
+        int tag = in.readUnsignedByte();
+        if (tag == SearchTrace.SEARCH) {
+          searches++;
+          in.skipBytes(10);
+        } else if (tag == SearchTrace.END) {
+          in.skipBytes(16);
+          if (searches == search) {
+            break;
+          }
+        } else if (tag == SearchTrace.ENTER) {
+          depth = in.readUnsignedByte();
+          int m = in.readInt();
+          int alpha = in.readInt();
+          int beta = in.readInt();
+          if (searches != search) {
+            continue;
+          }
+          if (top < 0 && (move == null || (depth == 1 && m == target))) {
+            top = depth;
+            count = 0;
+          }
+          if (top < 0) {
+            continue;
+          }
+          count++;
+          if (depth - top <= maxDepth) {
+            if (pending >= 0) {
+              out.println(line(pending - top, moves[pending], alphas[pending], betas[pending]));
+            }
+            moves[depth] = m;
+            alphas[depth] = alpha;
+            betas[depth] = beta;
+            pending = depth;
+          }
+        } else if (tag == SearchTrace.EXIT) {
+          int score = in.readInt();
+          boolean cutoff = (in.readUnsignedByte() & SearchTrace.CUTOFF) != 0;
+          if (searches != search || top < 0) {
+            depth--;
+            continue;
+          }
+          String result = "score " + score + (cutoff ? " cutoff" : "");
+          if (pending == depth) {
+            out.println(line(depth - top, moves[depth], alphas[depth], betas[depth]) + " " + result);
+            pending = -1;
+          } else if (depth - top <= maxDepth) {
+            out.println(indent(depth - top) + "  -> " + result);
+          }
+          if (depth == top && move != null) {
+            break;
+          }
+          depth--;
+        } else {
+          throw new IOException("bad record tag " + tag);
+        }
+      }
+    } catch (EOFException e) {
+      if (top >= 0) {
+        out.println("(the trace ends inside this tree)");
+      }
+    }
+    return count;
+  }
+
+  /**
+   *  close() closes the file.
+   */
+  public void close() {
+    try {
+      in.close();
+    } catch (IOException e) {
+      // Nothing was written.
+    }
+  }
+
+  private static String line(int level, int move, int alpha, int beta) {
+    return indent(level) + format(move) + " [" + bound(alpha) + ", " + bound(beta) + "]";
+  }
+
+  private static String indent(int level) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < level; i++) {
+      sb.append("  ");
+    }
+    return sb.toString();
+  }
+
+  private static String bound(int value) {
+    if (value == Integer.MIN_VALUE) {
+      return "-inf";
+    } else if (value == Integer.MAX_VALUE) {
+      return "inf";
+    }
+    return String.valueOf(value);
+  }
+
+  private static String format(int packed) {
+    return packed == -1 ? "root" : Moves.format(AnalysisCache.unpackMove(packed));
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: java player.SearchTraceReader trace-file [search n [move m] [depth d]]");
+      System.exit(1);
+    }
+    int search = 0;
+    Move move = null;
+    int depth = DEFAULT_DEPTH;
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      if (args[i].equals("search")) {
+        search = Integer.parseInt(args[i + 1]);
+      } else if (args[i].equals("move")) {
+        move = Moves.parse(args[i + 1]);
+        if (move == null) {
+          System.err.println("bad move " + args[i + 1]);
+          System.exit(1);
+        }
+      } else if (args[i].equals("depth")) {
+        depth = Integer.parseInt(args[i + 1]);
+      } else {
+        System.err.println("unknown option " + args[i]);
+        System.exit(1);
+      }
+    }
+    SearchTraceReader reader = new SearchTraceReader(new File(args[0]), System.out);
+    try {
+      if (search == 0) {
+        System.out.println(reader.list() + " searches");
+      } else {
+        long count = reader.print(search, move, depth);
+        if (count < 0) {
+          System.out.println("not found");
+          System.exit(1);
+        }
+        System.out.println(count + " nodes");
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+}
@@ -0,0 +1,169 @@
+/* SelfPlay.java */
+
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import list.*;
+
+/**
+ *  Plays MachinePlayers against each other and writes every position of
+ *  every game with the game's result, as training data for evaluators such
+ *  as NeuralEval.
+ *
+ *  Usage:  java player.SelfPlay data-file [games [depth [random [seed]]]]
+ *
+ *  The first "random" plies of each game are random legal moves, so that
+ *  games differ; the rest are chosen by search of the given depth.  Games
+ *  in which a position occurs for the third time with the same side to move,
+ *  or that last MAX_PLIES plies, are recorded as draws.
+ *
+ *  File layout (big-endian):
+ *    int magic, int dim,
+ *    then one record per position: long[words] black chips,
+ *    long[words] white chips (square (x, y) at bit x * dim + y, words =
+ *    (dim * dim + 63) / 64), byte side to move ('B' or 'W'), byte result
+ *    (1 if White won, -1 if Black won, 0 for a draw).
+ *  Records run to the end of the file.
+ */
+public class SelfPlay {
+
+  public final static int MAGIC = 0x4E535031;  // "NSP1"
+  final static int MAX_PLIES = 400;
+
+  private final int depth;
+  private final int randomPlies;
+  private final Random random;
+
+  /**
+   *  @param depth the search depth of both players.
+   *  @param randomPlies the number of random moves opening each game.
+   *  @param seed the seed for the random moves.
+   */
+  public SelfPlay(int depth, int randomPlies, long seed) {
+    this.depth = depth;
+    this.randomPlies = randomPlies;
+    this.random = new Random(seed);
+  }
+
+  /**
+   *  play() plays one game and appends its positions to "out".
+   *
+   *  @param out the stream the records are written to.
+   *  @return 1 if White won, -1 if Black won, 0 for a draw.
+   *  @exception IOException if a record cannot be written.
+   */
+  public int play(DataOutputStream out) throws IOException {
+    MachinePlayer white = new MachinePlayer(1, depth);
+    MachinePlayer black = new MachinePlayer(0, depth);
+    Board board = new Board();
+    long[][] blackBits = new long[MAX_PLIES][];
+    long[][] whiteBits = new long[MAX_PLIES][];
+    int result = 0;
+    int plies = 0;
+    while (plies < MAX_PLIES) {
+      boolean whiteMoves = plies % 2 == 0;
+      MachinePlayer mover = whiteMoves ? white : black;
+      MachinePlayer other = whiteMoves ? black : white;
+      char color = whiteMoves ? 'W' : 'B';
+      blackBits[plies] = board.bits('B').clone();
+      whiteBits[plies] = board.bits('W').clone();
+
+      Move m;
+      if (plies < randomPlies) {
+        m = randomMove(mover, color);
+        if (m == null || !mover.forceMove(m)) {
+          break;
+        }
+      } else {
+        m = mover.chooseMove();
+      }
+      if (m == null || m.moveKind == Move.QUIT || !other.opponentMove(m)) {
+        break;
+      }
+      if (m.moveKind == Move.STEP) {
+        board.removePiece(m.x2, m.y2);
+      }
+      board.addPiece(m.x1, m.y1, color);
+      plies++;
+
+      //  A move that completes networks for both players loses.
+      char opp = whiteMoves ? 'B' : 'W';
+      if (board.hasNetwork(opp)) {
+        result = whiteMoves ? -1 : 1;
+        break;
+      }
+      if (board.hasNetwork(color)) {
+        result = whiteMoves ? 1 : -1;
+        break;
+      }
+      if (white.repetitions() >= 2) {
+        break;
+      }
+    }
+    white.close();
+    black.close();
+
+    for (int i = 0; i < plies; i++) {
+      for (int w = 0; w < blackBits[i].length; w++) {
+        out.writeLong(blackBits[i][w]);
+      }
+      for (int w = 0; w < whiteBits[i].length; w++) {
+        out.writeLong(whiteBits[i][w]);
+      }
+      out.writeByte(i % 2 == 0 ? 'W' : 'B');
+      out.writeByte(result);
+    }
+    return result;
+  }
+
+  //  Picks a random legal move for "player", or returns null if it has none.
+  private Move randomMove(MachinePlayer player, char color) {
+    DList moves = player.listMoves(color);
+    int n = moves.length();
+    if (n == 0) {
+      return null;
+    }
+    int pick = random.nextInt(n);
+    try {
+      ListNode node = moves.front();
+      for (int i = 0; i < pick; i++) {
+        node = node.next();
+      }
+      return (Move) node.item();
+    } catch (InvalidNodeException e) {
+      return null;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: java player.SelfPlay data-file [games [depth [random [seed]]]]");
+      System.exit(1);
+    }
+    int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int depth = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+    int randomPlies = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+    long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+    SelfPlay selfPlay = new SelfPlay(depth, randomPlies, seed);
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(args[0])));
+    int[] results = new int[3];
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(Board.DIM);
+      for (int g = 0; g < games; g++) {
+        results[selfPlay.play(out) + 1]++;
+      }
+    } finally {
+      out.close();
+    }
+    System.out.println(games + " games written to " + args[0] + ": White won " + results[2]
+                       + ", Black won " + results[0] + ", drawn " + results[1]);
+  }
+
+}
@@ -0,0 +1,22 @@
+/* SessionListener.java */
+
+package player;
+
+/**
+ *  Receives the results of a GameSession.  Callbacks for one session are
+ *  never made concurrently, but they may come from any thread; they should
+ *  return quickly.
+ */
+public interface SessionListener {
+
+  // The machine has chosen and recorded move m.
+  void moveChosen(GameSession session, Move m);
+
+  // The opponent's move m was illegal and has been ignored.
+  void moveRejected(GameSession session, Move m);
+
+  // The game has ended with a win for "winner" ('B' or 'W').  The session is
+  // closed.
+  void gameOver(GameSession session, char winner);
+
+}
@@ -0,0 +1,232 @@
+/* Snapshot.java */
+
+package player;
+
+import java.util.Random;
+
+/**
+ *  An immutable position of the standard DIM x DIM board, held as the two
+ *  64-bit masks of occupied squares, square (x, y) at bit x * DIM + y as in
+ *  Board.  Unlike a Board, a Snapshot costs two longs, shares nothing and
+ *  may be passed between threads and used as a map key freely; equal
+ *  placements of chips give equal snapshots.
+ *
+ *  apply() makes the snapshot after a move by setting and clearing bits.
+ *  It checks only that the squares involved are empty or hold the mover's
+ *  chip; the placement rules are Board's, so a snapshot can hold any
+ *  position toBoard() can build.
+ */
+public final class Snapshot {
+
+  /**
+   *  The empty board.
+   */
+  public final static Snapshot EMPTY = new Snapshot(0, 0);
+
+  private final static int SQUARES = Board.DIM * Board.DIM;
+
+  private final long black;
+  private final long white;
+
+  /**
+   *  @param black the squares holding black chips.
+   *  @param white the squares holding white chips.
+   *  @exception IllegalArgumentException if a square holds both colors.
+   */
+  public Snapshot(long black, long white) {
+    if ((black & white) != 0) {
+      throw new IllegalArgumentException("squares hold both colors: "
+                                         + Long.toHexString(black & white));
+    }
+    this.black = black;
+    this.white = white;
+  }
+
+  /**
+   *  of() takes a snapshot of a board.
+   *
+   *  @param board a board of the standard size.
+   *  @return the snapshot of its chips.
+   *  @exception IllegalArgumentException if the board is not DIM x DIM.
+   */
+  public static Snapshot of(Board board) {
+    if (board.dim() != Board.DIM) {
+      throw new IllegalArgumentException("board size " + board.dim() + " is not " + Board.DIM);
+    }
+    return new Snapshot(board.bits('B')[0], board.bits('W')[0]);
+  }
+
+  /**
+   *  toBoard() builds a new Board holding this snapshot's chips.
+   *
+   *  @return the board.
+   */
+  public Board toBoard() {
+    Board board = new Board();
+    for (long bits = black; bits != 0; bits &= bits - 1) {
+      int sq = Long.numberOfTrailingZeros(bits);
+      board.addPiece(sq / Board.DIM, sq % Board.DIM, 'B');
+    }
+    for (long bits = white; bits != 0; bits &= bits - 1) {
+      int sq = Long.numberOfTrailingZeros(bits);
+      board.addPiece(sq / Board.DIM, sq % Board.DIM, 'W');
+    }
+    return board;
+  }
+
+  /**
+   *  apply() returns the snapshot after a move.
+   *
+   *  @param m the move; a quit leaves the position unchanged.
+   *  @param color the color of the player making it.
+   *  @return the new snapshot.
+   *  @exception IllegalArgumentException if the move leaves the board, adds
+   *             to an occupied square or steps a square not holding a chip
+   *             of "color".
+   */
+  public Snapshot apply(Move m, char color) {
+    if (m.moveKind == Move.QUIT) {
+      return this;
+    }
+    long to = bit(m.x1, m.y1);
+    if (((black | white) & to) != 0) {
+      throw new IllegalArgumentException("square " + m.x1 + "," + m.y1 + " is occupied");
+    }
+    long own = color == 'B' ? black : white;
+    if (m.moveKind == Move.STEP) {
+      long from = bit(m.x2, m.y2);
+      if ((own & from) == 0) {
+        throw new IllegalArgumentException("no " + color + " chip at " + m.x2 + "," + m.y2);
+      }
+      own ^= from;
+    }
+    own |= to;
+    return color == 'B' ? new Snapshot(own, white) : new Snapshot(black, own);
+  }
+
+  private static long bit(int x, int y) {
+    if (x < 0 || y < 0 || x >= Board.DIM || y >= Board.DIM) {
+      throw new IllegalArgumentException("square " + x + "," + y + " is off the board");
+    }
+    return 1L << (x * Board.DIM + y);
+  }
+
+  /**
+   *  bits() returns the squares holding one color's chips.
+   *
+   *  @param color the color.
+   *  @return the mask, square (x, y) at bit x * DIM + y.
+   */
+  public long bits(char color) {
+    return color == 'B' ? black : white;
+  }
+
+  /**
+   *  get() returns the color of the chip on a square.
+   *
+   *  @param x the x coordinate.
+   *  @param y the y coordinate.
+   *  @return 'B', 'W', or 0 if the square is empty.
+   */
+  public char get(int x, int y) {
+    long b = bit(x, y);
+    return (black & b) != 0 ? 'B' : (white & b) != 0 ? 'W' : 0;
+  }
+
+  /**
+   *  chips() counts one color's chips.
+   *
+   *  @param color the color.
+   *  @return the number of chips on the board.
+   */
+  public int chips(char color) {
+    return Long.bitCount(bits(color));
+  }
+
+  /**
+   *  hash() returns the Zobrist hash Board.hash(toMove) gives for the same
+   *  position, so that snapshots can key the book and analysis cache.
+   *
+   *  @param toMove the color of the player to move.
+   *  @return the hash of the position.
+   */
+  public long hash(char toMove) {
+    long h = toMove == 'W' ? Tables.ZOBRIST[2 * SQUARES] : 0;
+    for (long bits = black; bits != 0; bits &= bits - 1) {
+      h ^= Tables.ZOBRIST[Long.numberOfTrailingZeros(bits)];
+    }
+    for (long bits = white; bits != 0; bits &= bits - 1) {
+      h ^= Tables.ZOBRIST[SQUARES + Long.numberOfTrailingZeros(bits)];
+    }
+    return h;
+  }
+
+  public boolean equals(Object o) {
+    if (!(o instanceof Snapshot)) {
+      return false;
+    }
+    Snapshot s = (Snapshot) o;
+    return black == s.black && white == s.white;
+  }
+
+  public int hashCode() {
+    long h = black * 0x9E3779B97F4A7C15L + white;
+    h = (h ^ (h >>> 32)) * 0xBF58476D1CE4E5B9L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   *  toString() writes the two masks in hexadecimal, black first.
+   */
+  public String toString() {
+    return Long.toHexString(black) + "/" + Long.toHexString(white);
+  }
+
+  //  Plays random games on a Board and a Snapshot side by side and checks
+  //  that they agree after every move.
+  public static void main(String[] args) {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    Random random = new Random(1);
+    int chips = MachinePlayer.CHIPS;
+    long moves = 0;
+    for (int g = 0; g < games; g++) {
+      Board board = new Board();
+      Snapshot snapshot = EMPTY;
+      for (int i = 0; i < 60; i++) {
+        char color = i % 2 == 0 ? 'W' : 'B';
+        int x = random.nextInt(Board.DIM);
+        int y = random.nextInt(Board.DIM);
+        Move m;
+        if (snapshot.chips(color) < chips) {
+          m = new Move(x, y);
+        } else {
+          int x2 = random.nextInt(Board.DIM);
+          int y2 = random.nextInt(Board.DIM);
+          if (snapshot.get(x2, y2) != color) {
+            continue;
+          }
+          m = new Move(x, y, x2, y2);
+        }
+        if (snapshot.get(x, y) != 0) {
+          continue;
+        }
+        snapshot = snapshot.apply(m, color);
+        if (m.moveKind == Move.STEP) {
+          board.removePiece(m.x2, m.y2);
+        }
+        board.addPiece(x, y, color);
+        moves++;
+        Snapshot rebuilt = Snapshot.of(snapshot.toBoard());
+        if (!snapshot.equals(Snapshot.of(board)) || !rebuilt.equals(snapshot)
+            || rebuilt.hashCode() != snapshot.hashCode()
+            || snapshot.hash(color) != board.hash(color)) {
+          System.out.println("MISMATCH in game " + g + " after " + Moves.format(m) + ": "
+                             + snapshot + " " + Snapshot.of(board));
+          System.exit(1);
+        }
+      }
+    }
+    System.out.println(games + " games, " + moves + " moves: snapshots agree with Board");
+  }
+
+}
@@ -0,0 +1,90 @@
+/* TableGen.java */
+
+package player;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ *  Generates Tables.java, the lookup tables Board would otherwise build
+ *  when the first standard-size board is created: the Zobrist keys and the
+ *  placement masks of the empty board.  Compiled in as constants, they
+ *  are part of the class files (and of a class data sharing archive; see
+ *  Warmup), so a new process starts without computing them.
+ *
+ *  Usage:  java player.TableGen [Tables.java | check]
+ *
+ *  Writes the tables to the named file (default player/Tables.java), or,
+ *  with "check", compares the compiled tables with freshly computed ones
+ *  and exits with status 1 if they differ.  Run it and recompile whenever
+ *  Board.DIM or the way the tables are computed changes.
+ */
+public class TableGen {
+
+  final static int PER_LINE = 4;
+
+  public static void main(String[] args) throws IOException {
+    int dim = Board.DIM;
+    long[] zobrist = Board.computeZobristKeys(dim);
+    long[] black = Board.legalTemplate(dim, 'B');
+    long[] white = Board.legalTemplate(dim, 'W');
+
+    if (args.length > 0 && args[0].equals("check")) {
+      if (Tables.DIM != dim || !Arrays.equals(Tables.ZOBRIST, zobrist)
+          || !Arrays.equals(Tables.BLACK_LEGAL, black) || !Arrays.equals(Tables.WHITE_LEGAL, white)) {
+        System.out.println("Tables.java is out of date; rerun player.TableGen");
+        System.exit(1);
+      }
+      System.out.println("Tables.java is up to date");
+      return;
+    }
+
+    String file = args.length > 0 ? args[0] : "player/Tables.java";
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try {
+      out.println("/* Tables.java */");
+      out.println();
+      out.println("package player;");
+      out.println();
+      out.println("/**");
+      out.println(" *  Lookup tables for the standard board, generated by TableGen.  Do not");
+      out.println(" *  edit; rerun \"java player.TableGen\" instead.");
+      out.println(" */");
+      out.println("final class Tables {");
+      out.println();
+      out.println("  final static int DIM = " + dim + ";");
+      out.println();
+      out.println("  //  Board.zobrist keys: one per color and square, then white to move.");
+      write(out, "ZOBRIST", zobrist);
+      out.println();
+      out.println("  //  Board placement masks of the empty board.");
+      write(out, "BLACK_LEGAL", black);
+      write(out, "WHITE_LEGAL", white);
+      out.println();
+      out.println("  private Tables() {");
+      out.println("  }");
+      out.println();
+      out.println("}");
+    } finally {
+      out.close();
+    }
+    System.out.println("tables for a " + dim + "x" + dim + " board written to " + file);
+  }
+
+  //  Writes a long[] constant, PER_LINE values to a line.
+  private static void write(PrintWriter out, String name, long[] values) {
+    out.print("  final static long[] " + name + " = {");
+    for (int i = 0; i < values.length; i++) {
+      if (i % PER_LINE == 0) {
+        out.println();
+        out.print("   ");
+      }
+      out.print(" 0x" + String.format("%016X", values[i]) + "L" + (i + 1 < values.length ? "," : ""));
+    }
+    out.println();
+    out.println("  };");
+  }
+
+}
@@ -0,0 +1,61 @@
+/* Tables.java */
+
+package player;
+
+/**
+ *  Lookup tables for the standard board, generated by TableGen.  Do not
+ *  edit; rerun "java player.TableGen" instead.
+ */
+final class Tables {
+
+  final static int DIM = 8;
+
+  //  Board.zobrist keys: one per color and square, then white to move.
+  final static long[] ZOBRIST = {
+    0xE220A8397B1DCDAFL, 0x6E789E6AA1B965F4L, 0x06C45D188009454FL, 0xF88BB8A8724C81ECL,
+    0x1B39896A51A8749BL, 0x53CB9F0C747EA2EAL, 0x2C829ABE1F4532E1L, 0xC584133AC916AB3CL,
+    0x3EE5789041C98AC3L, 0xF3B8488C368CB0A6L, 0x657EECDD3CB13D09L, 0xC2D326E0055BDEF6L,
+    0x8621A03FE0BBDB7BL, 0x8E1F7555983AA92FL, 0xB54E0F1600CC4D19L, 0x84BB3F97971D80ABL,
+    0x7D29825C75521255L, 0xC3CF17102B7F7F86L, 0x3466E9A083914F64L, 0xD81A8D2B5A4485ACL,
+    0xDB01602B100B9ED7L, 0xA9038A921825F10DL, 0xEDF5F1D90DCA2F6AL, 0x54496AD67BD2634CL,
+    0xDD7C01D4F5407269L, 0x935E82F1DB4C4F7BL, 0x69B82EBC92233300L, 0x40D29EB57DE1D510L,
+    0xA2F09DABB45C6316L, 0xEE521D7A0F4D3872L, 0xF16952EE72F3454FL, 0x377D35DEA8E40225L,
+    0x0C7DE8064963BAB0L, 0x05582D37111AC529L, 0xD254741F599DC6F7L, 0x69630F7593D108C3L,
+    0x417EF96181DAA383L, 0x3C3C41A3B43343A1L, 0x6E19905DCBE531DFL, 0x4FA9FA7324851729L,
+    0x84EB4454A792922AL, 0x134F7096918175CEL, 0x07DC930B302278A8L, 0x12C015A97019E937L,
+    0xCC06C31652EBF438L, 0xECEE65630A691E37L, 0x3E84ECB1763E79ADL, 0x690ED476743AAE49L,
+    0x774615D7B1A1F2E1L, 0x22B353F04F4F52DAL, 0xE3DDD86BA71A5EB1L, 0xDF268ADEB6513356L,
+    0x2098EB73D4367D77L, 0x03D6845323CE3C71L, 0xC952C5620043C714L, 0x9B196BCA844F1705L,
+    0x30260345DD9E0EC1L, 0xCF448A5882BB9698L, 0xF4A578DCCBC87656L, 0xBFDEAED9A17B3C8FL,
+    0xED79402D1D5C5D7BL, 0x55F070AB1CBBF170L, 0x3E00A34929A88F1DL, 0xE255B237B8BB18FBL,
+    0x2A7B67AF6C6AD50EL, 0x466D5E7F3E46F143L, 0x42375CB399A4FC72L, 0x8C8A1F148A8BB259L,
+    0x32FCAB5DAED5BDFCL, 0x9E60398C8D8553C0L, 0xEE89CCEB8C4064C0L, 0xDB0215941D86A66FL,
+    0x5CCDE78203C367A8L, 0xF1BCBC6A1EC11786L, 0xEF054FCEEE954551L, 0xDF82012D0555C6DFL,
+    0x292566FF72403C08L, 0xC4DD302A1BFA1137L, 0xD85F219DB5C554E1L, 0x6A27FF807441BCD2L,
+    0x96A573E9B48216E8L, 0x46A9FDAC40BF0048L, 0x3DD12464A0EE15B4L, 0x451E521296A7EEA1L,
+    0x56E4398A98F8A0FDL, 0x7B7DC2160E3335A7L, 0xC679EE0BEBCB1CCAL, 0x928D6F2D7453424EL,
+    0x1B38994205234C6DL, 0x8086D193A6F2B568L, 0x21C6E26639AC2C65L, 0xD9DCCAC414D23C6FL,
+    0x91CD642057E00235L, 0x77FC607DC6589373L, 0x05B8ABE26DD3AEE7L, 0x12F6436AC376CC66L,
+    0x64952424897B2307L, 0xEE8C2BAF6343E5C3L, 0xDC4C613D9EBA2304L, 0x3505B7796BD1A506L,
+    0x8176DAF800A05F50L, 0x8BD8FF7A0385CDBCL, 0x1A764A3CD78101DAL, 0xBE4D15BF6CA266ACL,
+    0xA85E1F38BB2DC749L, 0x56759A968493CD8CL, 0xF3A9BCE7336BD182L, 0x365B15013741519BL,
+    0x1F7A44A6B109AC94L, 0x3521D628813CB177L, 0x6A77AFAB0F7C9370L, 0x179642D8CDE95015L,
+    0x5EF102A8FB354461L, 0xF51C504764ED82F2L, 0xC58427F041CE6808L, 0xFAD8FC45C9643C37L,
+    0xCF8682F9A70FA9C0L, 0x7E1B3B75A4005729L, 0x992DD867927B52D8L, 0x7FBD5DB142F6791FL,
+    0x370595AACAB4ADAEL, 0xB1392DBDC5AB61D6L, 0x9FEA7DFC79D452D9L, 0x40B12B120085641CL,
+    0xA192AFE3157C85D0L, 0xC847729F4E08F3A3L, 0x6F1384A306C41FC2L, 0x12D05C4045A39C19L,
+    0x9899202FD20F0841L
+  };
+
+  //  Board placement masks of the empty board.
+  final static long[] BLACK_LEGAL = {
+    0x00FFFFFFFFFFFF00L
+  };
+  final static long[] WHITE_LEGAL = {
+    0x7E7E7E7E7E7E7E7EL
+  };
+
+  private Tables() {
+  }
+
+}
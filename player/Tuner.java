@@ -0,0 +1,387 @@
+/* Tuner.java */
+
+package player;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  Fits the weights of the hand-written evaluation (see EvalWeights) to the
+ *  results of self-play games by logistic regression, in the manner of
+ *  Texel's tuning method: the evaluation E of a position, from White's
+ *  view, is mapped to a predicted result sigmoid(E), and the weights are
+ *  chosen to minimize the mean squared difference from the game results
+ *  (1 for a White win, 0.5 for a draw, 0 for a loss).
+ *
+ *  Usage:  java player.Tuner data-file weights-out [epochs [threads]]
+ *
+ *  The data file is written by SelfPlay.  Each epoch streams it once: a
+ *  reader thread decodes blocks of positions into a bounded queue and
+ *  "threads" workers (default: one per processor) take blocks, compute the
+ *  features of each position and sum the gradient of the error.  Memory
+ *  use is therefore independent of the size of the corpus.  The weights
+ *  are updated with Adam after every epoch (default 100).
+ *
+ *  The weights are fitted as reals on features scaled to similar ranges,
+ *  then rescaled to integers (see toWeights), since the search only
+ *  compares scores.  Only standard-size boards are supported.
+ */
+public class Tuner {
+
+  final static int BLOCK = 4096;
+  final static int WEIGHT_SCALE = 10000;
+  final static int SAMPLE = 200000;
+  final static double RATE = 0.05;
+
+  //  Typical magnitudes of the features, in the order of EvalWeights.NAMES.
+  private final static double[] SCALE = {10, 100, 1000, 3, 1, 3};
+
+  private final File data;
+  private final int threads;
+
+  /**
+   *  @param data a SelfPlay data file.
+   *  @param threads the number of worker threads.
+   *  @exception IOException if the file cannot be read or is not for a
+   *             standard-size board.
+   */
+  public Tuner(File data, int threads) throws IOException {
+    this.data = data;
+    this.threads = threads;
+    DataInputStream in = open();
+    int dim = in.readInt();
+    in.close();
+    if (dim != Board.DIM) {
+      throw new IOException(data + " holds games on a " + dim + "x" + dim + " board");
+    }
+  }
+
+  //  Opens the data file and reads past its magic number.
+  private DataInputStream open() throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(data), 1 << 16));
+    if (in.readInt() != SelfPlay.MAGIC) {
+      in.close();
+      throw new IOException(data + " is not a self-play data file");
+    }
+    return in;
+  }
+
+  /**
+   *  A block of positions as read from the data file.
+   */
+  static class Block {
+
+    final long[] black;
+    final long[] white;
+    final double[] targets;
+    int size;
+
+    Block(int capacity) {
+      black = new long[capacity];
+      white = new long[capacity];
+      targets = new double[capacity];
+    }
+
+  }
+
+  //  The end-of-data marker passed to each worker.
+  private final static Block END = new Block(0);
+
+  //  Computes the features of a position for White, less those for Black,
+  //  scaled by SCALE.
+  static double[] features(long black, long white, NetworkDistance distance) {
+    double[] f = new double[EvalWeights.NAMES.length];
+    long[] b = {black};
+    long[] w = {white};
+    side(f, BatchEval.connects(white, black), white & MachinePlayer.WHITE_GOAL,
+         white & (MachinePlayer.WHITE_GOAL << 56), distance.distance(w, b, 'W', null), 1);
+    side(f, BatchEval.connects(black, white), black & MachinePlayer.BLACK_GOAL,
+         black & (MachinePlayer.BLACK_GOAL << 7), distance.distance(b, w, 'B', null), -1);
+    for (int j = 0; j < f.length; j++) {
+      f[j] /= SCALE[j];
+    }
+    return f;
+  }
+
+  //  Adds one side's terms to f, as EvalWeights.side() weighs them.
+  private static void side(double[] f, int c, long near, long far, int distance, int sign) {
+    f[EvalWeights.CONNECTS] += sign * c;
+    f[EvalWeights.CONNECTS2] += sign * c * c;
+    f[EvalWeights.CONNECTS3] += sign * c * c * c;
+    f[EvalWeights.GOAL] += sign * (Long.bitCount(near) + Long.bitCount(far));
+    if (near != 0 && far != 0) {
+      f[EvalWeights.BOTH_GOALS] += sign;
+    }
+    f[EvalWeights.DISTANCE] += sign * distance;
+  }
+
+  //  Reads the next block of at most "limit" positions, or returns null at
+  //  the end of the file.
+  private Block readBlock(DataInputStream in, int limit) throws IOException {
+    Block block = new Block(limit);
+    try {
+      while (block.size < limit) {
+        block.black[block.size] = in.readLong();
+        block.white[block.size] = in.readLong();
+        in.readByte();
+        block.targets[block.size] = (in.readByte() + 1) / 2.0;
+        block.size++;
+      }
+    } catch (EOFException e) {
+      // The last record has been read.
+    }
+    return block.size == 0 ? null : block;
+  }
+
+  private static double sigmoid(double e) {
+    return 1 / (1 + Math.exp(-e));
+  }
+
+  private static double dot(double[] theta, double[] f) {
+    double e = 0;
+    for (int j = 0; j < f.length; j++) {
+      e += theta[j] * f[j];
+    }
+    return e;
+  }
+
+  /**
+   *  epoch() streams the data file once and computes the mean error and its
+   *  gradient for the given weights.  If a worker thread fails, the epoch
+   *  stops and its exception is rethrown here.
+   *
+   *  @param theta the weights on the scaled features.
+   *  @param gradient receives the gradient of the mean error.
+   *  @return the mean squared error.
+   *  @exception IOException if the file cannot be read.
+   */
+  public double epoch(final double[] theta, double[] gradient) throws IOException {
+    final BlockingQueue<Block> queue = new ArrayBlockingQueue<Block>(2 * threads);
+    final double[][] sums = new double[threads][theta.length + 2];
+    final Thread reader = Thread.currentThread();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final double[] sum = sums[t];
+      workers[t] = new Thread("tuner-" + t) {
+        public void run() {
+          NetworkDistance distance = new NetworkDistance(Board.DIM);
+          try {
+            for (Block b = queue.take(); b != END; b = queue.take()) {
+              for (int i = 0; i < b.size; i++) {
+                double[] f = features(b.black[i], b.white[i], distance);
+                double p = sigmoid(dot(theta, f));
+                double error = p - b.targets[i];
+                double g = 2 * error * p * (1 - p);
+                for (int j = 0; j < f.length; j++) {
+                  sum[j] += g * f[j];
+                }
+                sum[theta.length] += error * error;
+                sum[theta.length + 1]++;
+              }
+            }
+          } catch (InterruptedException e) {
+            // Abandoned by the reader.
+          } catch (Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+              reader.interrupt();
+            }
+          }
+        }
+      };
+      workers[t].start();
+    }
+
+    DataInputStream in = open();
+    boolean interrupted;
+    try {
+      in.readInt();
+      for (Block b = readBlock(in, BLOCK); b != null; b = readBlock(in, BLOCK)) {
+        queue.put(b);
+      }
+      for (int t = 0; t < threads; t++) {
+        queue.put(END);
+      }
+      for (int t = 0; t < threads; t++) {
+        workers[t].join();
+      }
+    } catch (InterruptedException e) {
+      if (failure.get() == null) {
+        throw new IOException("interrupted");
+      }
+    } finally {
+      in.close();
+      interrupted = stop(workers);
+    }
+    rethrow(failure.get(), interrupted);
+
+    double error = 0;
+    double count = 0;
+    Arrays.fill(gradient, 0);
+    for (int t = 0; t < threads; t++) {
+      for (int j = 0; j < theta.length; j++) {
+        gradient[j] += sums[t][j];
+      }
+      error += sums[t][theta.length];
+      count += sums[t][theta.length + 1];
+    }
+    if (count == 0) {
+      throw new IOException(data + " holds no positions");
+    }
+    for (int j = 0; j < theta.length; j++) {
+      gradient[j] /= count;
+    }
+    return error / count;
+  }
+
+  //  Interrupts worker threads and waits until all of them have ended, so
+  //  that none can interrupt the calling thread afterwards.  Returns true if
+  //  the calling thread was interrupted while waiting.
+  static boolean stop(Thread[] workers) {
+    for (int t = 0; t < workers.length; t++) {
+      workers[t].interrupt();
+    }
+    boolean interrupted = false;
+    for (int t = 0; t < workers.length; t++) {
+      while (workers[t].isAlive()) {
+        try {
+          workers[t].join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    return interrupted;
+  }
+
+  //  Rethrows the error that stopped a worker thread, if any, in the thread
+  //  that started it, once every worker has ended.  The interrupt the failed
+  //  worker sent is cleared; otherwise an interrupt that arrived while
+  //  waiting for the workers is kept.  A worker can only fail with an
+  //  unchecked throwable.
+  static void rethrow(Throwable failure, boolean interrupted) {
+    if (failure == null) {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+    Thread.interrupted();
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    throw (RuntimeException) failure;
+  }
+
+  /**
+   *  initial() returns the default weights, scaled by the factor K that fits
+   *  them best to a sample of the data.  Texel's method fits K first so
+   *  that the tuning starts from the current evaluation.
+   *
+   *  @return the starting weights on the scaled features.
+   *  @exception IOException if the file cannot be read.
+   */
+  public double[] initial() throws IOException {
+    double[] theta = new double[EvalWeights.NAMES.length];
+    for (int j = 0; j < theta.length; j++) {
+      theta[j] = EvalWeights.DEFAULT.get(j) * SCALE[j];
+    }
+    DataInputStream in = open();
+    Block sample;
+    try {
+      in.readInt();
+      sample = readBlock(in, SAMPLE);
+    } finally {
+      in.close();
+    }
+    if (sample == null) {
+      throw new IOException(data + " holds no positions");
+    }
+    double[][] features = new double[sample.size][];
+    NetworkDistance distance = new NetworkDistance(Board.DIM);
+    for (int i = 0; i < sample.size; i++) {
+      features[i] = features(sample.black[i], sample.white[i], distance);
+    }
+    double bestK = 1;
+    double bestError = Double.MAX_VALUE;
+    for (double k = 1e-5; k < 10; k *= 1.25) {
+      double error = 0;
+      for (int i = 0; i < sample.size; i++) {
+        double d = sigmoid(k * dot(theta, features[i])) - sample.targets[i];
+        error += d * d;
+      }
+      if (error < bestError) {
+        bestError = error;
+        bestK = k;
+      }
+    }
+    for (int j = 0; j < theta.length; j++) {
+      theta[j] *= bestK;
+    }
+    return theta;
+  }
+
+  /**
+   *  toWeights() converts fitted weights to integer evaluation weights,
+   *  scaled so that a typical value of the largest term is WEIGHT_SCALE.
+   *
+   *  @param theta the weights on the scaled features.
+   *  @return the integer weights.
+   */
+  public static EvalWeights toWeights(double[] theta) {
+    double max = 0;
+    for (int j = 0; j < theta.length; j++) {
+      max = Math.max(max, Math.abs(theta[j]));
+    }
+    int[] w = new int[theta.length];
+    for (int j = 0; j < theta.length && max > 0; j++) {
+      w[j] = (int) Math.round(theta[j] / SCALE[j] / max * WEIGHT_SCALE);
+    }
+    return new EvalWeights(w);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: java player.Tuner data-file weights-out [epochs [threads]]");
+      System.exit(1);
+    }
+    int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+    int threads = args.length > 3 ? Integer.parseInt(args[3])
+                                  : Runtime.getRuntime().availableProcessors();
+    Tuner tuner = new Tuner(new File(args[0]), Math.max(1, threads));
+
+    double[] theta = tuner.initial();
+    double[] gradient = new double[theta.length];
+    double[] m = new double[theta.length];
+    double[] v = new double[theta.length];
+    double error = 0;
+    long start = System.currentTimeMillis();
+    for (int e = 1; e <= epochs; e++) {
+      error = tuner.epoch(theta, gradient);
+      for (int j = 0; j < theta.length; j++) {
+        m[j] = 0.9 * m[j] + 0.1 * gradient[j];
+        v[j] = 0.999 * v[j] + 0.001 * gradient[j] * gradient[j];
+        double mHat = m[j] / (1 - Math.pow(0.9, e));
+        double vHat = v[j] / (1 - Math.pow(0.999, e));
+        theta[j] -= RATE * mHat / (Math.sqrt(vHat) + 1e-12);
+      }
+      if (e == 1 || e % 10 == 0 || e == epochs) {
+        System.out.println("epoch " + e + ": error " + error + ", " + toWeights(theta));
+      }
+    }
+    EvalWeights weights = toWeights(theta);
+    weights.save(new File(args[1]), "Tuned on " + args[0] + ", error " + error);
+    System.out.println("weights written to " + args[1] + " after "
+                       + (System.currentTimeMillis() - start) + " ms: " + weights);
+  }
+
+}
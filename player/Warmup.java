@@ -0,0 +1,72 @@
+/* Warmup.java */
+
+package player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ *  Exercises the code a MachinePlayer runs in a game, so that a run of it
+ *  loads every class an engine process needs.  Its purpose is to be the
+ *  training run of an application class data sharing (AppCDS) archive.
+ *  The classes must come from a jar for the JVM to archive them:
+ *
+ *    jar cf network.jar -C classes .
+ *    java -XX:ArchiveClassesAtExit=network.jsa -cp network.jar player.Warmup
+ *    java -XX:SharedArchiveFile=network.jsa -cp network.jar player.Engine
+ *
+ *  The last JVM maps the parsed and verified classes from the archive
+ *  instead of loading them from the jar.  The archive is only valid for
+ *  the jar and JDK it was made with.
+ *
+ *  Usage:  java player.Warmup [plies]
+ *
+ *  Plays one game of at most "plies" plies (default 30, enough to reach
+ *  the step phase) between two MachinePlayers, then runs a short session
+ *  of the engine protocol, and prints the time taken.
+ */
+public class Warmup {
+
+  final static int DEPTH = 2;
+
+  public static void main(String[] args) {
+    int plies = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+    long start = System.nanoTime();
+
+    MachinePlayer white = new MachinePlayer(1, DEPTH);
+    MachinePlayer black = new MachinePlayer(0, DEPTH);
+    white.setOpeningBook(null);
+    black.setOpeningBook(null);
+    Board board = new Board();
+    for (int i = 0; i < plies; i++) {
+      MachinePlayer mover = i % 2 == 0 ? white : black;
+      MachinePlayer other = i % 2 == 0 ? black : white;
+      Move m = mover.chooseMove();
+      if (m == null || m.moveKind == Move.QUIT || !other.opponentMove(m)) {
+        break;
+      }
+      if (m.moveKind == Move.STEP) {
+        board.removePiece(m.x2, m.y2);
+      }
+      board.addPiece(m.x1, m.y1, i % 2 == 0 ? 'W' : 'B');
+      if (board.hasNetwork('W') || board.hasNetwork('B')) {
+        break;
+      }
+    }
+    white.close();
+    black.close();
+
+    Engine engine = new Engine(new PrintStream(new ByteArrayOutputStream()));
+    String[] session = {"network", "isready", "newgame", "position startpos moves 1,1 2,2",
+                        "go depth " + DEPTH, "isready", "stop", "quit"};
+    for (int i = 0; i < session.length; i++) {
+      if (!engine.execute(session[i])) {
+        break;
+      }
+    }
+    engine.execute("stop");
+
+    System.out.println("warmed up in " + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+
+}